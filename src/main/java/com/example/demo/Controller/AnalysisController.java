@@ -1,40 +1,114 @@
 package com.example.demo.Controller;
 
+import com.example.demo.Service.AnalysisJobService;
 import com.example.demo.Service.AnalysisService;
+import com.example.demo.Service.DatabaseScheduler;
+import com.example.demo.Service.TeamAnalysisService;
 import com.example.demo.dto.AnalysisDto;
+import com.example.demo.dto.AnalysisJobStatus;
 import com.example.demo.dto.AnalysisResponse;
+import com.example.demo.dto.BatchAnalysisRequest;
+import com.example.demo.dto.BatchAnalysisResponse;
+import com.example.demo.dto.TeamAnalysisDto;
 import com.example.demo.entity.User;
 import com.example.demo.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
+
 @RestController
 @RequestMapping("/api")
 @CrossOrigin(origins = "http://localhost:3000")
 public class AnalysisController {
 
+    // 活動分析（個人・チーム）で指定できる期間（日数）の上限
+    private static final int MAX_DURATION_DAYS = 365;
+
     @Autowired
     private AnalysisService analysisService;
+    private final AnalysisJobService analysisJobService;
+    private final TeamAnalysisService teamAnalysisService;
     private final UserRepository userRepository;
+    private final DatabaseScheduler databaseScheduler;
 
-    public AnalysisController(AnalysisService analysisService, UserRepository userRepository) {
+    public AnalysisController(AnalysisService analysisService, AnalysisJobService analysisJobService,
+                              TeamAnalysisService teamAnalysisService, UserRepository userRepository,
+                              DatabaseScheduler databaseScheduler) {
         this.analysisService = analysisService;
+        this.analysisJobService = analysisJobService;
+        this.teamAnalysisService = teamAnalysisService;
         this.userRepository = userRepository;
+        this.databaseScheduler = databaseScheduler;
     }
 
     @PostMapping("/repositories/{owner}/{repo}/analysis")
     public Mono<AnalysisResponse> analyzeCommits(
             @PathVariable String owner,
             @PathVariable String repo) {
-        // 認証ユーザーIDを取得
-        Long currentUserId = getCurrentUserId();
-        return analysisService.analyzeRepositoryCommits(owner, repo, currentUserId);
+        // 認証ユーザーのGitHub ID（共有トークンの残りが少ないときは、キャッシュミスの場合だけユーザーを読み込んでそのトークンでGitHubを呼ぶ）
+        Long githubId = getCurrentUserId();
+        return analysisService.analyzeRepositoryCommits(owner, repo, githubId, findGithubAccessToken(githubId));
+    }
+
+    // 分析結果を生成しながらSSEで流す（chunk イベントで部分テキスト、最後に done イベント）
+    @GetMapping(value = "/repositories/{owner}/{repo}/analysis/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamAnalysis(
+            @PathVariable String owner,
+            @PathVariable String repo) {
+        Long githubId = getCurrentUserId();
+        return analysisService.streamRepositoryAnalysis(owner, repo, githubId, findGithubAccessToken(githubId))
+                .map(chunk -> ServerSentEvent.builder(chunk).event("chunk").build())
+                .concatWith(Mono.just(ServerSentEvent.builder(owner + "/" + repo).event("done").build()))
+                .onErrorResume(error -> {
+                    // 上流のエラー内容（URLやレスポンス本文を含むことがある）はクライアントに返さずログにだけ残す
+                    System.err.println("ストリーミング分析に失敗しました: " + owner + "/" + repo + " " + error.getMessage());
+                    return Mono.just(ServerSentEvent.builder("分析に失敗しました。時間をおいて再度お試しください。").event("error").build());
+                });
+    }
+
+    // 複数リポジトリをまとめて分析する（リポジトリごとの結果とエラーを返す）
+    @PostMapping("/analysis/batch")
+    public Mono<BatchAnalysisResponse> analyzeBatch(@RequestBody BatchAnalysisRequest request) {
+        Long githubId = getCurrentUserId();
+        return analysisService.analyzeBatch(request.repositories(), githubId, findGithubAccessToken(githubId));
+    }
+
+    // 非同期ジョブとして分析を登録し、ジョブIDをすぐに返す
+    @PostMapping("/repositories/{owner}/{repo}/analysis/jobs")
+    public ResponseEntity<AnalysisJobStatus> submitAnalysisJob(
+            @PathVariable String owner,
+            @PathVariable String repo) {
+        AnalysisJobStatus status = analysisJobService.submit(owner, repo, getCurrentUser());
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/analysis/jobs/" + status.jobId()))
+                .body(status);
+    }
+
+    // ジョブの状態をポーリングで取得する
+    @GetMapping("/analysis/jobs/{jobId}")
+    public Mono<ResponseEntity<AnalysisJobStatus>> getAnalysisJob(@PathVariable Long jobId) {
+        return analysisJobService.getStatus(jobId, getCurrentUser())
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // ジョブの進捗と結果をSSEで購読する（完了したらストリームが閉じる）
+    @GetMapping(value = "/analysis/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<AnalysisJobStatus>> streamAnalysisJob(@PathVariable Long jobId) {
+        return analysisJobService.subscribe(jobId, getCurrentUser())
+                .map(status -> ServerSentEvent.builder(status)
+                        .event(status.status())
+                        .build());
     }
 
     // デバッグ用のエンドポイント
@@ -45,11 +119,28 @@ public class AnalysisController {
 
     @GetMapping("/analysis")
     public Mono<ResponseEntity<AnalysisDto>> getAnalysis(@RequestParam(defaultValue = "7") int duration) {
+        validateDuration(duration);
         User currentUser = getCurrentUser();
         return analysisService.analyzeUserActivity(currentUser, duration)
                 .map(ResponseEntity::ok);
     }
 
+    // チーム全体とメンバー別の活動分析
+    @GetMapping("/teams/{teamId}/analysis")
+    public Mono<ResponseEntity<TeamAnalysisDto>> getTeamAnalysis(
+            @PathVariable Long teamId,
+            @RequestParam(defaultValue = "7") int duration) {
+        validateDuration(duration);
+        return teamAnalysisService.analyzeTeam(teamId, getCurrentUser(), duration)
+                .map(ResponseEntity::ok);
+    }
+
+    private static void validateDuration(int duration) {
+        if (duration < 1 || duration > MAX_DURATION_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "duration は1から" + MAX_DURATION_DAYS + "の範囲で指定してください。");
+        }
+    }
+
     private Long getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || authentication.getName() == null) {
@@ -62,6 +153,14 @@ public class AnalysisController {
         }
     }
 
+    // 購読されたとき（キャッシュミスで上流を呼ぶとき）に初めてユーザーを読み込む。トークンが無ければ空
+    private Mono<String> findGithubAccessToken(Long githubId) {
+        return databaseScheduler.call(() -> userRepository.findByGithubId(githubId)
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "ユーザーが見つかりません")))
+                .mapNotNull(User::getGithubAccessToken)
+                .cache();
+    }
+
     private User getCurrentUser() {
         Long githubId = getCurrentUserId();
         return userRepository.findByGithubId(githubId)
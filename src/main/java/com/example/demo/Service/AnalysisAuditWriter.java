@@ -0,0 +1,172 @@
+package com.example.demo.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * analysis_requests への監査ログの書き込みをまとめて行う。
+ * 呼び出し側はロックフリーのキューに積むだけで戻り、専用スレッドがJDBCのバッチINSERTで書き込む。
+ * キューが満杯のときの扱いは overflow-policy で選ぶ。終了時はキューに残った分を書き込んでから止まる。
+ * ユーザーはJWTのGitHub IDで受け取り、users.id への変換もINSERTの中で行う（リクエストごとにユーザーを読み込まない）。
+ */
+@Component
+public class AnalysisAuditWriter {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO analysis_requests (user_id, repo_owner, repo_name, status, requested_at, updated_at) " +
+            "SELECT id, ?, ?, ?, ?, ? FROM users WHERE github_id = ?";
+
+    /**
+     * キューが満杯のときの扱い。
+     * DROP_NEWEST: 新しい記録を捨てる / DROP_OLDEST: 最も古い記録を捨てて積む / SYNC: 呼び出し元のスレッドで直接書き込む
+     */
+    public enum OverflowPolicy {
+        DROP_NEWEST, DROP_OLDEST, SYNC
+    }
+
+    private record AuditRecord(Long githubId, String owner, String repo, String status, OffsetDateTime requestedAt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+
+    private final Queue<AuditRecord> queue = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size() は全走査になるので件数は別に数える
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public AnalysisAuditWriter(
+            JdbcTemplate jdbcTemplate,
+            @Value("${analysis.audit.capacity:10000}") int capacity,
+            @Value("${analysis.audit.batch-size:200}") int batchSize,
+            @Value("${analysis.audit.flush-interval:1s}") Duration flushInterval,
+            @Value("${analysis.audit.overflow-policy:drop-oldest}") String overflowPolicy,
+            MeterRegistry meterRegistry
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+
+        FunctionCounter.builder("analysis.audit.written", written, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("analysis.audit.dropped", dropped, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("analysis.audit.failed", failed, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("analysis.audit.queue.size", size, AtomicInteger::get).register(meterRegistry);
+
+        this.flusher = new Thread(this::runFlusher, "analysis-audit-writer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 監査ログを1件積む。ブロックしない（SYNCポリシーで満杯の場合を除く）。
+     */
+    public void record(Long githubId, String owner, String repo, String status) {
+        AuditRecord record = new AuditRecord(githubId, owner, repo, status, OffsetDateTime.now());
+        if (!running) {
+            // 停止後に届いた記録はその場で書く
+            write(List.of(record));
+            return;
+        }
+        if (size.incrementAndGet() > capacity) {
+            switch (overflowPolicy) {
+                case DROP_NEWEST -> {
+                    size.decrementAndGet();
+                    dropped.increment();
+                    return;
+                }
+                case DROP_OLDEST -> {
+                    // 最も古い記録と入れ替える（取り出せなければその間に空きができている）
+                    if (queue.poll() != null) {
+                        size.decrementAndGet();
+                        dropped.increment();
+                    }
+                }
+                case SYNC -> {
+                    size.decrementAndGet();
+                    write(List.of(record));
+                    return;
+                }
+            }
+        }
+        queue.offer(record);
+        if (size.get() >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    private void runFlusher() {
+        while (running) {
+            if (size.get() < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            drain();
+        }
+    }
+
+    private void drain() {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        AuditRecord record;
+        while ((record = queue.poll()) != null) {
+            size.decrementAndGet();
+            batch.add(record);
+            if (batch.size() >= batchSize) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(List<AuditRecord> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (AuditRecord record : batch) {
+            rows.add(new Object[]{record.owner(), record.repo(), record.status(),
+                    record.requestedAt(), record.requestedAt(), record.githubId()});
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            written.add(batch.size());
+        } catch (RuntimeException e) {
+            // 監査ログのために分析を止めないので、失敗したバッチは捨てる
+            failed.add(batch.size());
+            System.err.println("分析リクエストログの書き込みに失敗しました（" + batch.size() + "件）: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        // フラッシュ中に積まれた残りを書き切る
+        drain();
+    }
+}
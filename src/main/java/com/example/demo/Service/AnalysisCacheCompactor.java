@@ -0,0 +1,53 @@
+package com.example.demo.Service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+/**
+ * 保持期間を過ぎた analysis_caches の行を定期的に削除する。
+ * 1回のDELETEは batch-size 行までにし、長いロックや大きなトランザクションを作らない。
+ * 保持期間は stale-if-error より短くしない（古い結果の代替表示に使うため）。
+ */
+@Component
+public class AnalysisCacheCompactor {
+
+    private static final String DELETE_BATCH_SQL =
+            "DELETE FROM analysis_caches WHERE id IN (" +
+            "SELECT id FROM analysis_caches WHERE analyzed_at < ? ORDER BY analyzed_at LIMIT ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${analysis.cache.retention:7d}")
+    private Duration retention;
+
+    @Value("${analysis.cache.compaction.batch-size:1000}")
+    private int batchSize;
+
+    // 1回の実行で削除する最大バッチ数（残りは次回に回す）
+    @Value("${analysis.cache.compaction.max-batches:100}")
+    private int maxBatches;
+
+    public AnalysisCacheCompactor(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Scheduled(fixedDelayString = "${analysis.cache.compaction.interval:1h}", initialDelayString = "${analysis.cache.compaction.initial-delay:5m}")
+    public void compact() {
+        OffsetDateTime threshold = OffsetDateTime.now().minus(retention);
+        try {
+            for (int i = 0; i < maxBatches; i++) {
+                int deleted = jdbcTemplate.update(DELETE_BATCH_SQL, threshold, batchSize);
+                if (deleted < batchSize) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("分析キャッシュの削除に失敗しました: " + e.getMessage());
+        }
+    }
+}
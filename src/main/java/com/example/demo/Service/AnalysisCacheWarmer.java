@@ -0,0 +1,114 @@
+package com.example.demo.Service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * よく分析されるリポジトリのキャッシュを、期限切れになる少し前に裏で作り直す（refresh-ahead）。
+ * analysis_requests の直近のリクエスト数で人気のリポジトリを選び、
+ * 同時実行数と1回あたりのGemini呼び出し回数に上限を設けて再分析する。
+ * 呼び出し回数は GeminiCallBudget で数えるので、同じ時間帯のユーザーのリクエストによる呼び出しは含まない。
+ * 複数インスタンスで動いても、分析自体はリースで1台だけが行う。
+ */
+@Component
+public class AnalysisCacheWarmer {
+
+    private static final String POPULAR_SQL =
+            "SELECT r.repo_owner, r.repo_name, COUNT(*) AS requests " +
+            "FROM analysis_requests r " +
+            "WHERE r.requested_at > NOW() - ? * INTERVAL '1 second' " +
+            "GROUP BY r.repo_owner, r.repo_name " +
+            "HAVING COUNT(*) >= ? " +
+            "AND COALESCE((SELECT MAX(c.analyzed_at) FROM analysis_caches c " +
+            "WHERE c.repo_owner = r.repo_owner AND c.repo_name = r.repo_name), 'epoch') " +
+            "< NOW() - ? * INTERVAL '1 second' " +
+            "ORDER BY requests DESC LIMIT ?";
+
+    private record Candidate(String owner, String repo) {
+    }
+
+    private final AnalysisService analysisService;
+    private final AnalysisResultCache resultCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${analysis.warmer.enabled:true}")
+    private boolean enabled;
+
+    // 人気を数える期間と、対象にする最小リクエスト数
+    @Value("${analysis.warmer.lookback:24h}")
+    private Duration lookback;
+
+    @Value("${analysis.warmer.min-requests:3}")
+    private int minRequests;
+
+    // キャッシュの期限のどれくらい前から作り直すか
+    @Value("${analysis.warmer.refresh-ahead:10m}")
+    private Duration refreshAhead;
+
+    @Value("${analysis.warmer.max-repositories:20}")
+    private int maxRepositories;
+
+    @Value("${analysis.warmer.concurrency:2}")
+    private int concurrency;
+
+    @Value("${analysis.warmer.max-gemini-calls:20}")
+    private int maxGeminiCalls;
+
+    @Value("${analysis.warmer.run-timeout:4m}")
+    private Duration runTimeout;
+
+    public AnalysisCacheWarmer(
+            AnalysisService analysisService,
+            AnalysisResultCache resultCache,
+            JdbcTemplate jdbcTemplate
+    ) {
+        this.analysisService = analysisService;
+        this.resultCache = resultCache;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Scheduled(fixedDelayString = "${analysis.warmer.interval:5m}", initialDelayString = "${analysis.warmer.initial-delay:1m}")
+    public void warm() {
+        if (!enabled) {
+            return;
+        }
+        List<Candidate> candidates;
+        try {
+            Duration refreshAfter = resultCache.getTtl().minus(refreshAhead);
+            candidates = jdbcTemplate.query(POPULAR_SQL,
+                    (rs, rowNum) -> new Candidate(rs.getString("repo_owner"), rs.getString("repo_name")),
+                    lookback.toSeconds(), minRequests, Math.max(0, refreshAfter.toSeconds()), maxRepositories);
+        } catch (RuntimeException e) {
+            System.err.println("キャッシュウォーマーの対象取得に失敗しました: " + e.getMessage());
+            return;
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        GeminiCallBudget budget = new GeminiCallBudget(maxGeminiCalls);
+        try {
+            Flux.fromIterable(candidates)
+                    // 予算を使い切ったら新しい再分析は始めない（実行中の再分析も、それ以上はGeminiを呼ばずに失敗する）
+                    .takeWhile(candidate -> budget.remaining() > 0)
+                    .flatMap(candidate -> analysisService.refresh(candidate.owner(), candidate.repo())
+                            .contextWrite(budget.context())
+                            .onErrorResume(error -> {
+                                System.err.println("キャッシュの事前更新に失敗しました: "
+                                        + candidate.owner() + "/" + candidate.repo() + " " + error.getMessage());
+                                return Mono.empty();
+                            }), concurrency, 1)
+                    .then()
+                    .block(runTimeout);
+        } catch (RuntimeException e) {
+            System.err.println("キャッシュウォーマーが時間内に終わりませんでした: " + e.getMessage());
+        }
+    }
+}
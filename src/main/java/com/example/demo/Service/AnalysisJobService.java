@@ -0,0 +1,209 @@
+package com.example.demo.Service;
+
+import com.example.demo.dto.AnalysisJobStatus;
+import com.example.demo.dto.AnalysisResponse;
+import com.example.demo.entity.AnalysisRequest;
+import com.example.demo.entity.User;
+import com.example.demo.repository.AnalysisRequestRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * リポジトリ分析の非同期ジョブ。
+ * POSTではジョブを登録してすぐにIDを返し、固定サイズのワーカープールで分析を実行する。
+ * 状態は analysis_requests の行（queued → running → success / cache_hit / stale / error）に記録し、
+ * 実行中のジョブは進捗をSSEで購読できる。
+ */
+@Service
+public class AnalysisJobService {
+
+    private final AnalysisService analysisService;
+    private final AnalysisRequestRepository requestRepository;
+    private final DatabaseScheduler databaseScheduler;
+    private final ThreadPoolExecutor workers;
+    private final Duration jobTimeout;
+    private final Duration retention;
+
+    private static final int FINAL_STATUS_ATTEMPTS = 3;
+
+    // このインスタンスで受け付けたジョブ（完了後も retention の間は結果を保持する）
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+
+    public AnalysisJobService(
+            AnalysisService analysisService,
+            AnalysisRequestRepository requestRepository,
+            DatabaseScheduler databaseScheduler,
+            @Value("${analysis.jobs.workers:4}") int workerCount,
+            @Value("${analysis.jobs.queue-capacity:100}") int queueCapacity,
+            @Value("${analysis.jobs.timeout:2m}") Duration jobTimeout,
+            @Value("${analysis.jobs.retention:10m}") Duration retention
+    ) {
+        this.analysisService = analysisService;
+        this.requestRepository = requestRepository;
+        this.databaseScheduler = databaseScheduler;
+        this.jobTimeout = jobTimeout;
+        this.retention = retention;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "analysis-job-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * ジョブを登録する。キューが満杯の場合は503を返す。
+     */
+    public AnalysisJobStatus submit(String owner, String repo, User user) {
+        AnalysisRequest request = new AnalysisRequest();
+        request.setUserId(user.getId());
+        request.setRepoOwner(owner);
+        request.setRepoName(repo);
+        request.setStatus("queued");
+        request.setRequestedAt(OffsetDateTime.now());
+        request.setUpdatedAt(request.getRequestedAt());
+        request = requestRepository.save(request);
+
+        Job job = new Job(request.getId(), user.getId(), owner, repo);
+        jobs.put(job.id, job);
+        try {
+            workers.execute(() -> run(job, user.getGithubAccessToken()));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            updateStatus(job.id, "error");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "分析ジョブが混み合っています。しばらくしてから再試行してください。");
+        }
+        return job.current();
+    }
+
+    /**
+     * ジョブの状態を返す。他のインスタンスで受け付けたジョブはDBの行とキャッシュから組み立てる。
+     */
+    public Mono<AnalysisJobStatus> getStatus(Long jobId, User user) {
+        Job job = jobs.get(jobId);
+        if (job != null) {
+            return job.userId.equals(user.getId()) ? Mono.just(job.current()) : Mono.empty();
+        }
+        return databaseScheduler.call(() -> requestRepository.findById(jobId)
+                        .filter(request -> user.getId().equals(request.getUserId()))
+                        .orElse(null))
+                .flatMap(request -> {
+                    String repository = request.getRepoOwner() + "/" + request.getRepoName();
+                    AnalysisJobStatus status = new AnalysisJobStatus(jobId, repository, request.getStatus(), null, null);
+                    if ("queued".equals(request.getStatus()) || "running".equals(request.getStatus())
+                            || "error".equals(request.getStatus())) {
+                        return Mono.just(status);
+                    }
+                    return analysisService.findCachedAnalysis(request.getRepoOwner(), request.getRepoName())
+                            .map(result -> new AnalysisJobStatus(jobId, repository, request.getStatus(), result, null))
+                            .defaultIfEmpty(status);
+                });
+    }
+
+    /**
+     * ジョブの状態変化を流す。現在の状態から始まり、完了した時点で終わる。
+     */
+    public Flux<AnalysisJobStatus> subscribe(Long jobId, User user) {
+        Job job = jobs.get(jobId);
+        if (job == null || !job.userId.equals(user.getId())) {
+            // このインスタンスに無いジョブは現在の状態を1回だけ返す
+            return getStatus(jobId, user).flux();
+        }
+        return job.updates.asFlux();
+    }
+
+    private void run(Job job, String userToken) {
+        job.emit("running", null, null);
+        updateStatus(job.id, "running");
+        try {
+            AnalysisResponse result = analysisService
+                    .analyze(job.owner, job.repo, Mono.justOrEmpty(userToken), status -> job.finalStatus = status)
+                    .block(jobTimeout);
+            String status = job.finalStatus != null ? job.finalStatus : "success";
+            persistFinalStatus(job.id, status);
+            job.emit(status, result, null);
+        } catch (RuntimeException e) {
+            // タイムアウトなど、分析本体が状態を記録する前に失敗した場合も error で確定させる
+            persistFinalStatus(job.id, "error");
+            job.emit("error", null, e.getMessage());
+        } finally {
+            job.updates.tryEmitComplete();
+            Mono.delay(retention).subscribe(tick -> jobs.remove(job.id));
+        }
+    }
+
+    /**
+     * 完了時の状態をワーカースレッド上で書き込む。
+     * 書き込めないと行が running のまま残るため、数回まで再試行してから諦める。
+     */
+    private void persistFinalStatus(Long jobId, String status) {
+        for (int attempt = 1; attempt <= FINAL_STATUS_ATTEMPTS; attempt++) {
+            try {
+                updateStatus(jobId, status);
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("分析リクエストの状態の記録に失敗しました: " + jobId + " " + status
+                        + " (" + attempt + "/" + FINAL_STATUS_ATTEMPTS + ") " + e.getMessage());
+            }
+        }
+    }
+
+    private void updateStatus(Long jobId, String status) {
+        Job job = jobs.get(jobId);
+        if (job != null) {
+            job.finalStatus = status;
+        }
+        requestRepository.updateStatus(jobId, status, OffsetDateTime.now());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private static final class Job {
+        private final Long id;
+        private final Long userId;
+        private final String owner;
+        private final String repo;
+        // 最新の状態を保持し、後から購読したクライアントにもまず現在の状態を送る
+        private final Sinks.Many<AnalysisJobStatus> updates = Sinks.many().replay().latest();
+        private volatile AnalysisJobStatus current;
+        private volatile String finalStatus;
+
+        Job(Long id, Long userId, String owner, String repo) {
+            this.id = id;
+            this.userId = userId;
+            this.owner = owner;
+            this.repo = repo;
+            emit("queued", null, null);
+        }
+
+        AnalysisJobStatus current() {
+            return current;
+        }
+
+        synchronized void emit(String status, AnalysisResponse result, String error) {
+            current = new AnalysisJobStatus(id, owner + "/" + repo, status, result, error);
+            updates.tryEmitNext(current);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo.Service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * 複数インスタンス間で「同じリポジトリの分析は1台だけが実行する」ためのリース管理。
+ * analysis_leases テーブルの行をリースとして扱い、期限切れの行だけを奪えるようにする。
+ * セッション単位のアドバイザリロックと違い、分析中にDBコネクションを握り続けない。
+ */
+@Service
+public class AnalysisLeaseService {
+
+    private static final String ACQUIRE_SQL =
+            "INSERT INTO analysis_leases (repo_owner, repo_name, holder, expires_at) " +
+            "VALUES (?, ?, ?, NOW() + ? * INTERVAL '1 second') " +
+            "ON CONFLICT (repo_owner, repo_name) DO UPDATE " +
+            "SET holder = EXCLUDED.holder, expires_at = EXCLUDED.expires_at " +
+            "WHERE analysis_leases.expires_at < NOW()";
+
+    private static final String RELEASE_SQL =
+            "DELETE FROM analysis_leases WHERE repo_owner = ? AND repo_name = ? AND holder = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseScheduler databaseScheduler;
+    private final Duration leaseTtl;
+    // このインスタンスを識別するID（リースの所有者として記録する）
+    private final String instanceId = UUID.randomUUID().toString();
+
+    public AnalysisLeaseService(
+            JdbcTemplate jdbcTemplate,
+            DatabaseScheduler databaseScheduler,
+            @Value("${analysis.lease.ttl:2m}") Duration leaseTtl
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseScheduler = databaseScheduler;
+        this.leaseTtl = leaseTtl;
+    }
+
+    /**
+     * リースの取得を試みる。取得できた場合はtrue、他インスタンスが保持中ならfalse。
+     * DBエラー時は協調を諦めてtrueを返し、分析自体は止めない。
+     */
+    public Mono<Boolean> tryAcquire(String owner, String repo) {
+        return databaseScheduler.call(() -> jdbcTemplate.update(ACQUIRE_SQL, owner, repo, instanceId, leaseTtl.toSeconds()) > 0)
+                .onErrorResume(error -> {
+                    System.err.println("分析リースの取得に失敗しました: " + error.getMessage());
+                    return Mono.just(true);
+                });
+    }
+
+    /**
+     * 自インスタンスが保持しているリースを解放する。
+     */
+    public Mono<Void> release(String owner, String repo) {
+        return databaseScheduler.run(() -> jdbcTemplate.update(RELEASE_SQL, owner, repo, instanceId))
+                .onErrorResume(error -> {
+                    System.err.println("分析リースの解放に失敗しました: " + error.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
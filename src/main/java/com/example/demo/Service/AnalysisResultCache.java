@@ -0,0 +1,158 @@
+package com.example.demo.Service;
+
+import com.example.demo.dto.AnalysisResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * リポジトリ分析結果のインメモリキャッシュ（L1）。
+ * analysis_caches テーブル（L2）の手前に置き、DBアクセスとJSONのデシリアライズを省略する。
+ * 正はあくまでDB側であり、ここに無い・期限切れの場合はL2を参照する。
+ * 期限（ttl）を過ぎたエントリも stale-ttl までは残し、stale-while-revalidate 用に getStale で返す。
+ */
+@Component
+public class AnalysisResultCache {
+
+    private final int maxSize;
+    private final Duration ttl;
+    private final Duration staleTtl;
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private record Entry(AnalysisResponse response, OffsetDateTime analyzedAt) {
+    }
+
+    public AnalysisResultCache(int maxSize, Duration ttl, MeterRegistry meterRegistry) {
+        this(maxSize, ttl, ttl, meterRegistry);
+    }
+
+    @Autowired
+    public AnalysisResultCache(
+            @Value("${analysis.cache.l1.max-size:500}") int maxSize,
+            @Value("${analysis.cache.ttl:1h}") Duration ttl,
+            @Value("${analysis.cache.stale-ttl:24h}") Duration staleTtl,
+            MeterRegistry meterRegistry
+    ) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.staleTtl = staleTtl.compareTo(ttl) < 0 ? ttl : staleTtl;
+        // アクセス順のLinkedHashMapで、上限を超えたら最も使われていないエントリを追い出す
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > AnalysisResultCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        });
+
+        FunctionCounter.builder("analysis.cache.l1.hits", hits, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("analysis.cache.l1.misses", misses, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("analysis.cache.l1.evictions", evictions, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("analysis.cache.l1.size", entries, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * 有効なエントリがあれば返す。無い・期限切れの場合はnull。
+     */
+    public AnalysisResponse get(String owner, String repo) {
+        String key = key(owner, repo);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (isExpired(entry)) {
+            removeIfStaleExpired(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.response().withFreshness(entry.analyzedAt(), AnalysisResponse.FRESH);
+    }
+
+    /**
+     * 期限切れでも stale-ttl 以内のエントリを返す（鮮度は呼び出し側で判断する）。無ければnull。
+     * ヒット率の統計には数えない。
+     */
+    public AnalysisResponse getStale(String owner, String repo) {
+        String key = key(owner, repo);
+        Entry entry = entries.get(key);
+        if (entry == null || removeIfStaleExpired(key, entry)) {
+            return null;
+        }
+        return entry.response().withFreshness(entry.analyzedAt(), null);
+    }
+
+    /**
+     * 分析結果を登録する。analyzedAt はTTLの起点で、L2の行と同じ値を渡す。
+     */
+    public void put(String owner, String repo, AnalysisResponse response, OffsetDateTime analyzedAt) {
+        Entry entry = new Entry(response, analyzedAt);
+        if (!entry.analyzedAt().isBefore(OffsetDateTime.now().minus(staleTtl))) {
+            entries.put(key(owner, repo), entry);
+        }
+    }
+
+    /**
+     * 分析結果を捨てる。L2により新しい行がある場合に、古い結果を返し続けないようにする。
+     */
+    public void invalidate(String owner, String repo) {
+        entries.remove(key(owner, repo));
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public Duration getStaleTtl() {
+        return staleTtl;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private boolean isExpired(Entry entry) {
+        return entry.analyzedAt().isBefore(OffsetDateTime.now().minus(ttl));
+    }
+
+    private boolean removeIfStaleExpired(String key, Entry entry) {
+        if (!entry.analyzedAt().isBefore(OffsetDateTime.now().minus(staleTtl))) {
+            return false;
+        }
+        // 他スレッドが入れ直した新しいエントリは消さない
+        if (entries.remove(key, entry)) {
+            evictions.increment();
+        }
+        return true;
+    }
+
+    private static String key(String owner, String repo) {
+        return owner + "/" + repo;
+    }
+}
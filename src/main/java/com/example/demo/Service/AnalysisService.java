@@ -2,136 +2,453 @@ package com.example.demo.Service;
 
 import com.example.demo.dto.AnalysisDto;
 import com.example.demo.dto.AnalysisResponse;
+import com.example.demo.dto.BatchAnalysisRequest;
+import com.example.demo.dto.BatchAnalysisResponse;
 import com.example.demo.entity.AnalysisCache;
-import com.example.demo.entity.AnalysisRequest;
 import com.example.demo.entity.User;
 import com.example.demo.repository.AnalysisCacheRepository;
-import com.example.demo.repository.AnalysisRequestRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatusCode;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
 
+import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 @Service
 public class AnalysisService {
 
+    private static final int COMMITS_PER_PAGE = 100;
+
+    // 分析結果の4項目と出力例（単体・一括の両方のプロンプトで使う）
+    private static final String ANALYSIS_INSTRUCTIONS = "以下のGitコミットメッセージを分析し、次の4項目について日本語で箇条書きで簡潔にまとめてください。各項目は配列ではなく、1つのまとまった文章として返してください。\n" +
+            "1. 今週のハイライト\n" +
+            "2. おすすめの改善点\n" +
+            "3. トレンド分析\n" +
+            "4. 今週の総評\n" +
+            "\n【出力例】\n" +
+            "今週のハイライト\n機能追加をリードした1週間でした。特にユーザー認証機能の実装で高い貢献度を示しています。\n\n" +
+            "おすすめの改善点\n次はコードレビューにも挑戦してみましょう。チーム全体のコード品質向上に貢献できます。\n\n" +
+            "トレンド分析\nバックエンド開発に集中していますが、フロントエンドスキルも伸ばすとフルスタック開発者として成長できます。\n\n" +
+            "今週の総評\n全体的に活発な開発活動を行っています。特に機能追加において優れた成果を上げており、チームの主要な貢献者として活躍しています。継続的な成長が期待できます。\n";
+
+    // map段階: コミットの一部を中間要約にする
+    private static final String CHUNK_SUMMARY_INSTRUCTIONS = "以下は同じリポジトリのGitコミットメッセージの一部です。" +
+            "どのような機能追加・修正・改善が行われたか、目立つ傾向を日本語の箇条書きで簡潔に要約してください。";
+
+    // 要約の合計がまだ大きい場合に、要約同士をまとめる
+    private static final String SUMMARY_MERGE_INSTRUCTIONS = "以下は同じリポジトリのコミット履歴を分割して要約したものの一部です。" +
+            "重複をまとめ、主な変更内容と傾向を日本語の箇条書きで簡潔に要約してください。";
+
+    // reduce段階: 中間要約から4項目の結果を作る
+    private static final String REDUCE_PREAMBLE = "\n【コミットメッセージの要約】\n" +
+            "コミット数が多いため、コミットメッセージを分割して要約したものを以下に示します。これらをまとめて分析してください。\n";
+
+    static final String BATCH_INSTRUCTIONS = ANALYSIS_INSTRUCTIONS +
+            "\n複数のリポジトリのコミットメッセージを「### owner/repo」の見出しごとに示します。" +
+            "リポジトリごとに別々に分析し、各リポジトリの結果は必ず同じ「### owner/repo」の見出し行から始めてください。\n\n";
+
     // --- 依存コンポーネント ---
-    private final WebClient githubWebClient;
-    private final WebClient geminiWebClient;
+    private final GitHubApiClient githubApiClient;
+    private final GeminiClient geminiClient;
     private final AnalysisCacheRepository cacheRepository;
-    private final AnalysisRequestRepository requestRepository;
     private final ObjectMapper objectMapper;
+    private final AnalysisResultCache resultCache;
+    private final AnalysisLeaseService leaseService;
+    private final ContributionIngestionService ingestionService;
+    private final UserActivityRollupService rollupService;
+    private final AnalysisAuditWriter auditWriter;
+    private final DatabaseScheduler databaseScheduler;
+    private final MeterRegistry meterRegistry;
 
-    public AnalysisService(WebClient.Builder webClientBuilder) {
-        this.githubWebClient = webClientBuilder.baseUrl("https://api.github.com").build();
-        this.geminiWebClient = webClientBuilder.clone()
-                .baseUrl("https://generativelanguage.googleapis.com")
-                .build();
-        this.cacheRepository = null;
-        this.requestRepository = null;
-        this.objectMapper = new ObjectMapper();
-    }
+    // 実行中の分析（owner/repo → 共有Mono）
+    private final Map<String, Mono<AnalysisResponse>> inFlight = new ConcurrentHashMap<>();
+    // 実行中のストリーミング分析（owner/repo → 共有Flux）
+    private final Map<String, Flux<String>> inFlightStreams = new ConcurrentHashMap<>();
+
+    @Value("${analysis.commits.full-history.enabled:false}")
+    private boolean fullHistoryEnabled;
+
+    @Value("${analysis.commits.full-history.window:7d}")
+    private Duration fullHistoryWindow;
+
+    @Value("${analysis.commits.max-commits:1000}")
+    private int maxCommits;
+
+    @Value("${analysis.commits.page-concurrency:4}")
+    private int pageConcurrency;
+
+    @Value("${analysis.batch.max-repositories:20}")
+    private int batchMaxRepositories;
+
+    @Value("${analysis.batch.fetch-concurrency:4}")
+    private int batchFetchConcurrency;
+
+    @Value("${analysis.batch.gemini-concurrency:2}")
+    private int batchGeminiConcurrency;
 
-    @Value("${gemini.api.key}")
-    private String geminiApiKey;
+    @Value("${analysis.batch.prompt-token-budget:8000}")
+    private int batchPromptTokenBudget;
+
+    @Value("${analysis.gemini.chunk-token-budget:8000}")
+    private int geminiChunkTokenBudget;
+
+    @Value("${analysis.gemini.map-concurrency:4}")
+    private int geminiMapConcurrency;
+
+    @Value("${analysis.cache.stale-if-error:7d}")
+    private Duration staleIfErrorTtl;
+
+    @Value("${analysis.lease.poll-interval:1s}")
+    private Duration leasePollInterval;
+
+    @Value("${analysis.lease.wait-timeout:60s}")
+    private Duration leaseWaitTimeout;
 
     // --- コンストラクタ ---
     @Autowired
     public AnalysisService(
-            WebClient.Builder webClientBuilder,
-            @Value("${github.api.token}") String githubToken,
+            GitHubApiClient githubApiClient,
+            GeminiClient geminiClient,
             AnalysisCacheRepository cacheRepository,
-            AnalysisRequestRepository requestRepository,
-            ObjectMapper objectMapper
+            ObjectMapper objectMapper,
+            AnalysisResultCache resultCache,
+            AnalysisLeaseService leaseService,
+            ContributionIngestionService ingestionService,
+            UserActivityRollupService rollupService,
+            AnalysisAuditWriter auditWriter,
+            DatabaseScheduler databaseScheduler,
+            MeterRegistry meterRegistry
     ) {
+        this.githubApiClient = githubApiClient;
+        this.geminiClient = geminiClient;
         this.cacheRepository = cacheRepository;
-        this.requestRepository = requestRepository;
         this.objectMapper = objectMapper;
+        this.resultCache = resultCache;
+        this.leaseService = leaseService;
+        this.ingestionService = ingestionService;
+        this.rollupService = rollupService;
+        this.auditWriter = auditWriter;
+        this.databaseScheduler = databaseScheduler;
+        this.meterRegistry = meterRegistry;
+    }
 
-        // Gemini API用WebClient
-        this.geminiWebClient = webClientBuilder.clone()
-                .baseUrl("https://generativelanguage.googleapis.com")
-                .build();
+    // --- 主要なビジネスロジック ---
 
-        // GitHub API用WebClient
-        this.githubWebClient = webClientBuilder.baseUrl("https://api.github.com")
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + githubToken)
-                .defaultHeader(HttpHeaders.ACCEPT, "application/vnd.github.v3+json")
-                .build();
+    /**
+     * リポジトリ分析のメイン処理（キャッシュ対応）
+     * インメモリ(L1) → analysis_caches(L2) → GitHub+Gemini の順に参照する。
+     * userToken はキャッシュミスで上流を呼ぶときだけ購読する（キャッシュヒットではユーザーを読み込まない）。
+     */
+    public Mono<AnalysisResponse> analyzeRepositoryCommits(String owner, String repo, Long githubId, Mono<String> userToken) {
+        return analyze(owner, repo, userToken, status -> logRequest(githubId, owner, repo, status));
+    }
+
+    /**
+     * 分析本体。結果の状態（cache_hit / success / error）の記録方法は呼び出し側が決める。
+     * 非同期ジョブでは、新しい行を追加する代わりにジョブの行を更新するために使う。
+     * キャッシュが期限（ttl）切れでも stale-ttl 以内ならそのまま返して裏で再分析し（stale-while-revalidate）、
+     * 再分析に失敗した場合は stale-if-error 以内の最新の結果を返す。
+     */
+    public Mono<AnalysisResponse> analyze(String owner, String repo, Mono<String> userToken, Consumer<String> statusRecorder) {
+        // --- L1 Hit ---
+        AnalysisResponse cached = resultCache.get(owner, repo);
+        if (cached != null) {
+            countLookup("hit");
+            statusRecorder.accept("cache_hit");
+            return Mono.just(cached);
+        }
+
+        return timed("cache_lookup", findLatestCache(owner, repo, staleIfErrorTtl))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(latest -> {
+                    if (latest.isPresent()) {
+                        AnalysisResponse response = latest.get();
+                        OffsetDateTime now = OffsetDateTime.now();
+                        if (!response.analyzedAt().isBefore(now.minus(resultCache.getTtl()))) {
+                            // --- Cache Hit ---
+                            countLookup("hit");
+                            statusRecorder.accept("cache_hit");
+                            return Mono.just(response.withFreshness(response.analyzedAt(), AnalysisResponse.FRESH));
+                        }
+                        if (!response.analyzedAt().isBefore(now.minus(resultCache.getStaleTtl()))) {
+                            // --- Stale Hit: 古い結果をすぐ返し、裏で再分析する ---
+                            countLookup("stale");
+                            statusRecorder.accept("cache_hit");
+                            loadShared(owner, repo).subscribe(null, error ->
+                                    System.err.println("分析結果の再検証に失敗しました: " + owner + "/" + repo + " " + error.getMessage()));
+                            return Mono.just(response.withFreshness(response.analyzedAt(), AnalysisResponse.STALE));
+                        }
+                    }
+                    // --- Cache Miss ---
+                    countLookup("miss");
+                    return load(owner, repo, userToken)
+                            .doOnSuccess(response -> {
+                                statusRecorder.accept("success");
+                            })
+                            .onErrorResume(error -> {
+                                // 上流が失敗しても、古い結果があればそれを返す（状態は error と区別して stale とする）
+                                statusRecorder.accept(latest.isPresent() ? "stale" : "error");
+                                return latest
+                                        .map(response -> Mono.just(response.withFreshness(response.analyzedAt(), AnalysisResponse.STALE_IF_ERROR)))
+                                        .orElseGet(() -> Mono.error(error));
+                            });
+                });
+    }
+
+    /**
+     * リポジトリ分析のストリーミング版。Geminiの生成途中のテキストを届いた順に流す。
+     * キャッシュにあれば全文を1チャンクで返す。最後まで生成できたら全文を analysis_caches に保存する。
+     * 共有トークンで取得する場合は、同じリポジトリの実行中の分析に合流する。
+     * ユーザーのトークンで取得した場合は共有も保存もしない（load と同じ理由）。
+     */
+    public Flux<String> streamRepositoryAnalysis(String owner, String repo, Long githubId, Mono<String> userToken) {
+        return findCachedAnalysis(owner, repo)
+                .doOnNext(response -> logRequest(githubId, owner, repo, "cache_hit"))
+                .map(AnalysisResponse::analysisResult)
+                .flux()
+                .switchIfEmpty(resolveToken(userToken).flatMapMany(token -> {
+                    StringBuilder fullText = new StringBuilder();
+                    Flux<String> chunks = token.isEmpty()
+                            ? streamShared(owner, repo)
+                            : streamAnalysis(owner, repo, token.get(), geminiClient::generateUncached, geminiClient::streamUncached);
+                    return chunks
+                            .doOnNext(fullText::append)
+                            .doOnComplete(() -> logRequest(githubId, owner, repo, fullText.isEmpty() ? "error" : "success"))
+                            .doOnError(error -> logRequest(githubId, owner, repo, "error"));
+                }));
     }
 
-    // --- Gemini APIリクエスト用DTO ---
-    private static class GeminiRequest {
-        public final List<Content> contents;
-        public GeminiRequest(String text) {
-            this.contents = List.of(new Content(List.of(new Part(text))));
+    /**
+     * 共有トークンでのストリーミング分析。実行中の通常の分析があればその結果を1チャンクで返し、
+     * 無ければ同じリポジトリのストリーミング同士で1つの生成を共有する（後から来たリクエストには届いた分から再生する）。
+     * ノード間は通常の分析と同じリースで1台だけが生成する。
+     */
+    private Flux<String> streamShared(String owner, String repo) {
+        String key = owner + "/" + repo;
+        Mono<AnalysisResponse> loading = inFlight.get(key);
+        if (loading != null) {
+            return loading.map(AnalysisResponse::analysisResult).flux();
         }
+        return inFlightStreams.computeIfAbsent(key, k -> streamWithLease(owner, repo)
+                .doFinally(signal -> inFlightStreams.remove(k))
+                .cache());
     }
-    private static class Content {
-        public final List<Part> parts;
-        public Content(List<Part> parts) { this.parts = parts; }
+
+    private Flux<String> streamWithLease(String owner, String repo) {
+        return leaseService.tryAcquire(owner, repo)
+                .flatMapMany(acquired -> {
+                    if (acquired) {
+                        return streamAndSave(owner, repo)
+                                .doFinally(signal -> leaseService.release(owner, repo).subscribe());
+                    }
+                    return awaitPeerResult(owner, repo)
+                            .map(AnalysisResponse::analysisResult)
+                            .flux()
+                            .switchIfEmpty(Flux.defer(() -> streamAndSave(owner, repo)));
+                });
     }
-    private static class Part {
-        public final String text;
-        public Part(String text) { this.text = text; }
+
+    // 共有トークンで生成しながら流し、全文を保存してから完了する（合流した通常の分析が保存後のキャッシュを読めるように）
+    private Flux<String> streamAndSave(String owner, String repo) {
+        return Flux.defer(() -> {
+            StringBuilder fullText = new StringBuilder();
+            return streamAnalysis(owner, repo, null, geminiClient::generate, geminiClient::stream)
+                    .doOnNext(fullText::append)
+                    .concatWith(Mono.defer(() -> fullText.isEmpty()
+                            ? Mono.empty()
+                            : saveCache(owner, repo, new AnalysisResponse(owner + "/" + repo, fullText.toString(), "gemini-1.5-flash"))
+                                    .then(Mono.empty())));
+        });
     }
 
-    // --- 主要なビジネスロジック ---
+    private Flux<String> streamAnalysis(String owner, String repo, String token,
+                                        Function<String, Mono<String>> gemini, Function<String, Flux<String>> streamer) {
+        return timed("github_fetch", fetchCommitMessages(owner, repo, token))
+                .flatMap(messages -> buildAnalysisPrompt(messages, gemini))
+                .flatMapMany(streamer);
+    }
 
     /**
-     * リポジトリ分析のメイン処理（キャッシュ対応）
+     * キャッシュ済みの分析結果だけを返す（L1 → L2）。無ければ空。
      */
-    public Mono<AnalysisResponse> analyzeRepositoryCommits(String owner, String repo, Long userId) {
-        OffsetDateTime cacheThreshold = OffsetDateTime.now().minusHours(1);
+    public Mono<AnalysisResponse> findCachedAnalysis(String owner, String repo) {
+        AnalysisResponse cached = resultCache.get(owner, repo);
+        return cached != null ? Mono.just(cached) : findFreshCache(owner, repo);
+    }
 
-        return Mono.justOrEmpty(cacheRepository.findFirstByRepoOwnerAndRepoNameAndAnalyzedAtAfterOrderByAnalyzedAtDesc(owner, repo, cacheThreshold))
+    /**
+     * キャッシュの有無にかかわらず分析し直して保存する（ウォーマー用）。共有トークンを使い、analysis_requests には記録しない。
+     */
+    public Mono<AnalysisResponse> refresh(String owner, String repo) {
+        return Mono.deferContextual(context -> {
+            if (GeminiCallBudget.from(context).isEmpty()) {
+                return loadShared(owner, repo);
+            }
+            // 予算付きの再分析は途中で予算が尽きると失敗するので、inFlight に載せてユーザーのリクエストを合流させない。
+            // 実行中の分析があればそれに合流し、同じノードのユーザーのリクエストとはリースで待ち合わせる
+            Mono<AnalysisResponse> running = inFlight.get(owner + "/" + repo);
+            if (running != null) {
+                return running;
+            }
+            return GeminiCallBudget.from(context).get().remaining() > 0
+                    ? loadWithLease(owner, repo)
+                    : Mono.error(GeminiCallBudget.exhausted());
+        });
+    }
+
+    /**
+     * キャッシュミス時の分析。共有トークンで取得できる場合は共有の読み込みに合流する。
+     * ユーザーのトークンに切り替える場合、取得した内容はそのユーザーにしか見えない（プライベートリポジトリなど）可能性があるので、
+     * 他のリクエストと共有せず、L1・analysis_caches・Geminiの応答キャッシュにも載せない。
+     */
+    private Mono<AnalysisResponse> load(String owner, String repo, Mono<String> userToken) {
+        return resolveToken(userToken)
+                .flatMap(token -> token.isEmpty() ? loadShared(owner, repo) : analyzePrivately(owner, repo, token.get()));
+    }
+
+    /**
+     * 上流を呼ぶトークンを決める。共有トークンを使う場合は空。
+     */
+    private Mono<Optional<String>> resolveToken(Mono<String> userToken) {
+        return userToken
+                .map(token -> Optional.ofNullable(githubApiClient.chooseToken(token)))
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    private Mono<AnalysisResponse> analyzePrivately(String owner, String repo, String token) {
+        return fetchFromGitHubAndAnalyze(owner, repo, token, geminiClient::generateUncached)
+                .map(response -> response.withFreshness(OffsetDateTime.now(), AnalysisResponse.FRESH));
+    }
+
+    /**
+     * 同じリポジトリへの同時キャッシュミスを1つの上流呼び出しにまとめる。
+     * ノード内では実行中のMonoを共有し、ノード間はリースで1台だけが分析する。
+     */
+    private Mono<AnalysisResponse> loadShared(String owner, String repo) {
+        String key = owner + "/" + repo;
+        return inFlight.computeIfAbsent(key, k -> {
+            // ストリーミングで生成中なら、その保存を待ってキャッシュから読む
+            Flux<String> streaming = inFlightStreams.get(k);
+            Mono<AnalysisResponse> load = streaming == null
+                    ? loadWithLease(owner, repo)
+                    : streaming.then(Mono.defer(() -> findFreshCache(owner, repo)))
+                            .switchIfEmpty(Mono.defer(() -> loadWithLease(owner, repo)));
+            return load
+                    .doFinally(signal -> inFlight.remove(k))
+                    .cache();
+        });
+    }
+
+    private Mono<AnalysisResponse> loadWithLease(String owner, String repo) {
+        return leaseService.tryAcquire(owner, repo)
+                .flatMap(acquired -> {
+                    if (acquired) {
+                        return analyzeAndSave(owner, repo)
+                                .doFinally(signal -> leaseService.release(owner, repo).subscribe());
+                    }
+                    // 他インスタンスが分析中なので、その結果がL2に書かれるのを待つ
+                    return awaitPeerResult(owner, repo)
+                            .switchIfEmpty(Mono.defer(() -> analyzeAndSave(owner, repo)));
+                });
+    }
+
+    // 共有トークンで取得し、結果を共有のキャッシュに保存する
+    private Mono<AnalysisResponse> analyzeAndSave(String owner, String repo) {
+        return fetchFromGitHubAndAnalyze(owner, repo, null, geminiClient::generate)
+                .flatMap(response -> saveCache(owner, repo, response));
+    }
+
+    /**
+     * 他インスタンスの分析結果がanalysis_cachesに現れるまでポーリングする。
+     * 待機時間内に現れなければ空を返し、呼び出し側で自ら分析する。
+     */
+    private Mono<AnalysisResponse> awaitPeerResult(String owner, String repo) {
+        return Flux.interval(leasePollInterval)
+                .concatMap(tick -> findFreshCache(owner, repo))
+                .next()
+                .timeout(leaseWaitTimeout, Mono.empty());
+    }
+
+    /**
+     * analysis_caches から有効期限内の最新結果を取得し、L1にも載せる。
+     */
+    private Mono<AnalysisResponse> findFreshCache(String owner, String repo) {
+        return findLatestCache(owner, repo, resultCache.getTtl())
+                .map(response -> response.withFreshness(response.analyzedAt(), AnalysisResponse.FRESH));
+    }
+
+    /**
+     * maxAge 以内の最新結果を返す（L1に期限切れのエントリが残っていればそれを使い、無ければL2）。
+     * analyzedAt は付くが、鮮度の判定は呼び出し側で行う。
+     */
+    private Mono<AnalysisResponse> findLatestCache(String owner, String repo, Duration maxAge) {
+        OffsetDateTime threshold = OffsetDateTime.now().minus(maxAge);
+        AnalysisResponse stale = resultCache.getStale(owner, repo);
+        if (stale != null && !stale.analyzedAt().isBefore(threshold)) {
+            return Mono.just(stale);
+        }
+        return databaseScheduler.call(() -> cacheRepository.findFirstByRepoOwnerAndRepoNameAndAnalyzedAtAfterOrderByAnalyzedAtDesc(
+                        owner, repo, threshold).orElse(null))
                 .flatMap(cache -> {
-                    // --- Cache Hit ---
-                    logRequest(userId, owner, repo, "cache_hit");
                     try {
-                        AnalysisResponse response = objectMapper.readValue(cache.getResultJson(), AnalysisResponse.class);
+                        AnalysisResponse response = readCache(cache);
+                        resultCache.put(owner, repo, response, cache.getAnalyzedAt());
                         return Mono.just(response);
                     } catch (JsonProcessingException e) {
                         return Mono.error(new RuntimeException("キャッシュの解析に失敗しました。", e));
                     }
-                })
-                .switchIfEmpty(Mono.defer(() -> {
-                    // --- Cache Miss ---
-                    return fetchFromGitHubAndAnalyze(owner, repo)
-                            .doOnSuccess(response -> {
-                                saveCache(owner, repo, response);
-                                logRequest(userId, owner, repo, "success");
-                            })
-                            .doOnError(error -> {
-                                logRequest(userId, owner, repo, "error");
-                            });
-                }));
+                });
+    }
+
+    private AnalysisResponse readCache(AnalysisCache cache) throws JsonProcessingException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return objectMapper.readValue(cache.getResultJson(), AnalysisResponse.class)
+                    .withFreshness(cache.getAnalyzedAt(), null);
+        } finally {
+            sample.stop(meterRegistry.timer("analysis.json", "operation", "deserialize"));
+        }
     }
 
     /**
      * GitHubからのコミット取得とGeminiによる分析
+     * token が null なら共有トークンを使う。gemini はキャッシュを使うかどうかで generate / generateUncached を渡す。
      */
-    private Mono<AnalysisResponse> fetchFromGitHubAndAnalyze(String owner, String repo) {
-        return githubWebClient.get()
-                .uri("/repos/{owner}/{repo}/commits", owner, repo)
-                .retrieve()
-                .bodyToMono(JsonNode.class)
-                .map(this::extractCommitMessages)
-                .flatMap(this::callGeminiApi)
+    private Mono<AnalysisResponse> fetchFromGitHubAndAnalyze(String owner, String repo, String token,
+                                                             Function<String, Mono<String>> gemini) {
+        return timed("github_fetch", fetchCommitMessages(owner, repo, token))
+                .flatMap(messages -> timed("gemini", callGeminiApi(messages, gemini)))
                 .map(analysisText -> new AnalysisResponse(
                         owner + "/" + repo,
                         analysisText,
@@ -140,82 +457,488 @@ public class AnalysisService {
     }
 
     /**
-     * Gemini APIを呼び出す共通メソッド
+     * コミットメッセージの取得
+     * 通常はGitHubのデフォルト（先頭ページ30件）のみ。full-history有効時は期間内の全ページを並列に取得する。
+     */
+    private Mono<List<String>> fetchCommitMessages(String owner, String repo, String token) {
+        if (!fullHistoryEnabled) {
+            return githubApiClient.getJson(uriBuilder -> uriBuilder
+                            .path("/repos/{owner}/{repo}/commits")
+                            .build(owner, repo), token)
+                    .map(this::extractCommitMessages);
+        }
+
+        // URLが毎回変わると条件付きリクエストが効かないので、since は日単位に切り捨て、until は付けない（GitHubの既定は現在時刻）
+        OffsetDateTime since = OffsetDateTime.now(ZoneOffset.UTC).minus(fullHistoryWindow).truncatedTo(ChronoUnit.DAYS);
+        return githubApiClient.getJsonPage(commitsPage(owner, repo, since, 1), token)
+                .flatMapMany(first -> {
+                    // Linkヘッダーの最終ページ番号から残りのページを割り出し、上限件数分までに絞る
+                    int maxPages = (maxCommits + COMMITS_PER_PAGE - 1) / COMMITS_PER_PAGE;
+                    int lastPage = Math.min(first.lastPage(), maxPages);
+                    Flux<JsonNode> rest = Flux.range(2, Math.max(0, lastPage - 1))
+                            .flatMapSequential(page -> githubApiClient.getJson(
+                                    commitsPage(owner, repo, since, page), token), pageConcurrency);
+                    return Flux.concat(Mono.just(first.body()), rest);
+                })
+                .concatMapIterable(this::extractCommitMessages)
+                .take(maxCommits)
+                .collectList();
+    }
+
+    private static Function<UriBuilder, URI> commitsPage(String owner, String repo, OffsetDateTime since, int page) {
+        return uriBuilder -> uriBuilder
+                .path("/repos/{owner}/{repo}/commits")
+                .queryParam("since", since.toInstant().toString())
+                .queryParam("per_page", COMMITS_PER_PAGE)
+                .queryParam("page", page)
+                .build(owner, repo);
+    }
+
+    /**
+     * コミットメッセージを分析する。
+     * 1プロンプトに収まらない場合は、予算ごとのチャンクに分けて並列に要約し（map）、
+     * 要約をまとめて4項目の結果を作る（reduce）。要約がまだ収まらなければ、収まるまで要約を繰り返す。
+     */
+    private Mono<String> callGeminiApi(List<String> commitMessages, Function<String, Mono<String>> gemini) {
+        return buildAnalysisPrompt(commitMessages, gemini).flatMap(gemini);
+    }
+
+    /**
+     * 4項目の結果を生成させる最終プロンプトを作る。大きい場合はmap段階の要約までここで済ませる。
      */
-    private Mono<String> executeGeminiCall(String prompt) {
-        GeminiRequest requestBody = new GeminiRequest(prompt);
-
-        return geminiWebClient.post()
-                .uri("/v1beta/models/gemini-2.0-flash-light:generateContent")
-                .header(HttpHeaders.CONTENT_TYPE, "application/json")
-                .header("x-goog-api-key", this.geminiApiKey.trim()) // 認証エラーを解決したヘッダー方式
-                .bodyValue(requestBody)
-                .retrieve()
-                .onStatus(HttpStatusCode::isError, clientResponse ->
-                        clientResponse.bodyToMono(String.class)
-                                .flatMap(errorBody -> {
-                                    System.err.println("Gemini API Error Status: " + clientResponse.statusCode());
-                                    System.err.println("Gemini API Error Body: " + errorBody);
-                                    return Mono.error(new RuntimeException("Gemini APIがエラーを返しました。詳細はコンソールログを確認してください。"));
-                                })
-                )
-                .bodyToMono(JsonNode.class)
-                .map(response -> {
-                    JsonNode textNode = response.path("candidates").path(0).path("content").path("parts").path(0).path("text");
-                    if (textNode.isMissingNode() || textNode.isNull()) {
-                        String errorMessage = "Geminiからの応答形式が不正です: " + response.toString();
-                        System.err.println(errorMessage);
-                        return errorMessage;
+    private Mono<String> buildAnalysisPrompt(List<String> commitMessages, Function<String, Mono<String>> gemini) {
+        List<String> subjects = commitMessages.stream().map(AnalysisService::subjectLine).toList();
+        int available = geminiChunkTokenBudget - PromptTokens.estimate(ANALYSIS_INSTRUCTIONS);
+        if (PromptTokens.estimate(formatCommitMessages(subjects)) <= available) {
+            return Mono.just(ANALYSIS_INSTRUCTIONS + "\n【コミットメッセージ】\n" + formatCommitMessages(subjects));
+        }
+        return summarizeChunks(subjects, CHUNK_SUMMARY_INSTRUCTIONS, gemini)
+                .flatMap(summaries -> buildReducePrompt(summaries, gemini));
+    }
+
+    private Mono<String> buildReducePrompt(List<String> summaries, Function<String, Mono<String>> gemini) {
+        String joined = String.join("\n\n", summaries);
+        int available = geminiChunkTokenBudget - PromptTokens.estimate(ANALYSIS_INSTRUCTIONS + REDUCE_PREAMBLE);
+        if (summaries.size() == 1 || PromptTokens.estimate(joined) <= available) {
+            return Mono.just(ANALYSIS_INSTRUCTIONS + REDUCE_PREAMBLE + joined);
+        }
+        // 要約の合計がまだ大きい場合は、要約同士をもう一段まとめる
+        return summarizeChunks(summaries, SUMMARY_MERGE_INSTRUCTIONS, gemini)
+                .flatMap(merged -> buildReducePrompt(merged, gemini));
+    }
+
+    /**
+     * 予算ごとのチャンクを並列に要約する。結果はチャンクの順に並ぶ。
+     */
+    private Mono<List<String>> summarizeChunks(List<String> items, String instructions, Function<String, Mono<String>> gemini) {
+        List<List<String>> chunks = chunkByTokens(items, geminiChunkTokenBudget - PromptTokens.estimate(instructions));
+        return Flux.range(0, chunks.size())
+                .flatMapSequential(index -> gemini.apply(instructions
+                        + "（" + (index + 1) + "/" + chunks.size() + "）\n"
+                        + formatCommitMessages(chunks.get(index))), geminiMapConcurrency)
+                .collectList();
+    }
+
+    /**
+     * 見積もりトークン数が予算を超えないように、順序を保ったまま分割する。
+     * 1件で予算を超えるものは、収まる長さに切り詰めて単独のチャンクにする。
+     */
+    static List<List<String>> chunkByTokens(List<String> items, int tokenBudget) {
+        int budget = Math.max(1, tokenBudget);
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int used = 0;
+        for (String item : items) {
+            String fitted = item;
+            int tokens = PromptTokens.estimate("- " + fitted + "\n");
+            if (tokens > budget) {
+                fitted = PromptTokens.truncate(item, Math.max(1, budget - 1));
+                tokens = PromptTokens.estimate("- " + fitted + "\n");
+            }
+            if (!current.isEmpty() && used + tokens > budget) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                used = 0;
+            }
+            current.add(fitted);
+            used += tokens;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    // --- 一括分析 ---
+
+    /**
+     * 複数リポジトリの一括分析
+     * キャッシュ（L1 → analysis_caches を1クエリ）で解決できないものだけコミットを並列に取得し、
+     * トークン予算に収まる範囲で複数リポジトリを1つのGeminiプロンプトにまとめる。
+     * 結果はリクエストと同じ順で、リポジトリごとに結果またはエラーを返す。
+     */
+    public Mono<BatchAnalysisResponse> analyzeBatch(List<BatchAnalysisRequest.Repository> repositories, Long githubId, Mono<String> userToken) {
+        if (repositories == null || repositories.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "分析するリポジトリを指定してください。");
+        }
+        if (repositories.size() > batchMaxRepositories) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "一度に分析できるリポジトリは" + batchMaxRepositories + "件までです。");
+        }
+        for (BatchAnalysisRequest.Repository repository : repositories) {
+            if (repository == null || !StringUtils.hasText(repository.owner()) || !StringUtils.hasText(repository.repo())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "owner と repo は必須です。");
+            }
+        }
+
+        // 重複を除き、L1で解決できるものを先に埋める
+        Map<String, BatchAnalysisRequest.Repository> unique = new LinkedHashMap<>();
+        repositories.forEach(repository -> unique.putIfAbsent(repository.fullName(), repository));
+        Map<String, BatchAnalysisResponse.Item> results = new ConcurrentHashMap<>();
+        List<BatchAnalysisRequest.Repository> l1Misses = new ArrayList<>();
+        for (BatchAnalysisRequest.Repository repository : unique.values()) {
+            AnalysisResponse cached = resultCache.get(repository.owner(), repository.repo());
+            if (cached != null) {
+                results.put(repository.fullName(), new BatchAnalysisResponse.Item(repository.fullName(), "cache_hit", cached, null));
+            } else {
+                l1Misses.add(repository);
+            }
+        }
+
+        return findFreshCaches(l1Misses)
+                .flatMap(l2Hits -> {
+                    List<BatchAnalysisRequest.Repository> misses = new ArrayList<>();
+                    for (BatchAnalysisRequest.Repository repository : l1Misses) {
+                        AnalysisResponse cached = l2Hits.get(repository.fullName());
+                        if (cached != null) {
+                            results.put(repository.fullName(), new BatchAnalysisResponse.Item(repository.fullName(), "cache_hit", cached, null));
+                        } else {
+                            misses.add(repository);
+                        }
+                    }
+                    return analyzeMisses(misses, userToken, results);
+                })
+                .then(Mono.fromCallable(() -> {
+                    List<BatchAnalysisResponse.Item> items = new ArrayList<>();
+                    for (BatchAnalysisRequest.Repository repository : repositories) {
+                        items.add(results.get(repository.fullName()));
+                    }
+                    // 重複指定されたリポジトリも1回だけ記録する
+                    unique.values().forEach(repository -> logRequest(githubId, repository.owner(), repository.repo(),
+                            results.get(repository.fullName()).status()));
+                    return new BatchAnalysisResponse(items);
+                }));
+    }
+
+    /**
+     * analysis_caches から複数リポジトリの有効期限内の最新結果を1クエリで取得し、L1にも載せる。
+     */
+    private Mono<Map<String, AnalysisResponse>> findFreshCaches(List<BatchAnalysisRequest.Repository> repositories) {
+        if (repositories.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        Set<String> owners = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        Set<String> wanted = new HashSet<>();
+        for (BatchAnalysisRequest.Repository repository : repositories) {
+            owners.add(repository.owner());
+            names.add(repository.repo());
+            wanted.add(repository.fullName());
+        }
+        return databaseScheduler.call(() -> cacheRepository.findByRepoOwnerInAndRepoNameInAndAnalyzedAtAfter(
+                        owners, names, OffsetDateTime.now().minus(resultCache.getTtl())))
+                .map(caches -> {
+                    // owner と name を別々にIN検索しているので、組み合わせが一致するものだけ、最新の1件を使う
+                    Map<String, AnalysisCache> latest = new HashMap<>();
+                    for (AnalysisCache cache : caches) {
+                        String key = cache.getRepoOwner() + "/" + cache.getRepoName();
+                        if (wanted.contains(key)) {
+                            latest.merge(key, cache, (a, b) -> a.getAnalyzedAt().isAfter(b.getAnalyzedAt()) ? a : b);
+                        }
+                    }
+                    Map<String, AnalysisResponse> hits = new HashMap<>();
+                    latest.forEach((key, cache) -> {
+                        try {
+                            AnalysisResponse response = readCache(cache);
+                            resultCache.put(cache.getRepoOwner(), cache.getRepoName(), response, cache.getAnalyzedAt());
+                            hits.put(key, response.withFreshness(cache.getAnalyzedAt(), AnalysisResponse.FRESH));
+                        } catch (JsonProcessingException e) {
+                            // 壊れたキャッシュはミス扱いにして再分析する
+                            System.err.println("キャッシュの解析に失敗しました: " + key + " " + e.getMessage());
+                        }
+                    });
+                    return hits;
+                });
+    }
+
+    /**
+     * キャッシュに無いリポジトリのコミットを並列に取得し、予算ごとにまとめてGeminiで分析する。
+     */
+    private Mono<Void> analyzeMisses(List<BatchAnalysisRequest.Repository> misses, Mono<String> userToken,
+                                     Map<String, BatchAnalysisResponse.Item> results) {
+        if (misses.isEmpty()) {
+            return Mono.empty();
+        }
+        // ユーザーのトークンで取得した結果は共有のキャッシュに載せない（load と同じ理由）
+        return resolveToken(userToken).flatMap(chosen -> analyzeMisses(misses, chosen.orElse(null), results));
+    }
+
+    /**
+     * 共有トークンで分析する場合は、同じリポジトリの実行中の分析に合流する。
+     * 残りは inFlight に登録してから分析し、その間に来た通常の分析や他の一括分析も結果を待って合流できるようにする。
+     */
+    private Mono<Void> analyzeMisses(List<BatchAnalysisRequest.Repository> misses, String token,
+                                     Map<String, BatchAnalysisResponse.Item> results) {
+        if (token != null) {
+            return fetchAndAnalyzeMisses(misses, token, results);
+        }
+        List<BatchAnalysisRequest.Repository> owned = new ArrayList<>();
+        Map<String, Sinks.One<AnalysisResponse>> sinks = new HashMap<>();
+        List<Mono<Void>> joined = new ArrayList<>();
+        for (BatchAnalysisRequest.Repository repository : misses) {
+            String key = repository.fullName();
+            Sinks.One<AnalysisResponse> sink = Sinks.one();
+            Mono<AnalysisResponse> running = inFlightStreams.containsKey(key)
+                    ? loadShared(repository.owner(), repository.repo())
+                    : inFlight.putIfAbsent(key, sink.asMono());
+            if (running == null) {
+                owned.add(repository);
+                sinks.put(key, sink);
+                continue;
+            }
+            joined.add(running
+                    .doOnNext(response -> results.put(key, new BatchAnalysisResponse.Item(key, "success", response, null)))
+                    .onErrorResume(error -> {
+                        results.put(key, errorItem(key, error));
+                        return Mono.empty();
+                    })
+                    .then());
+        }
+        Mono<Void> analyzed = owned.isEmpty()
+                ? Mono.empty()
+                : fetchAndAnalyzeMisses(owned, token, results).doFinally(signal -> sinks.forEach((key, sink) -> {
+                    BatchAnalysisResponse.Item item = results.get(key);
+                    if (item != null && item.result() != null) {
+                        sink.tryEmitValue(item.result());
+                    } else {
+                        sink.tryEmitError(new IllegalStateException(item != null ? item.error() : "分析が中断されました。"));
+                    }
+                    inFlight.remove(key);
+                }));
+        joined.add(analyzed);
+        return Mono.when(joined);
+    }
+
+    private Mono<Void> fetchAndAnalyzeMisses(List<BatchAnalysisRequest.Repository> misses, String token,
+                                             Map<String, BatchAnalysisResponse.Item> results) {
+        return Flux.fromIterable(misses)
+                .flatMap(repository -> timed("github_fetch", fetchCommitMessages(repository.owner(), repository.repo(), token))
+                        .map(messages -> new RepositoryCommits(repository.fullName(), messages))
+                        .onErrorResume(error -> {
+                            System.err.println("コミットの取得に失敗しました: " + repository.fullName() + " " + error.getMessage());
+                            results.put(repository.fullName(), errorItem(repository.fullName(), error));
+                            return Mono.empty();
+                        }), batchFetchConcurrency)
+                .collectList()
+                .flatMapMany(fetched -> Flux.fromIterable(packBatches(fetched, batchPromptTokenBudget)))
+                .flatMap(batch -> analyzeBatchPrompt(batch, byFullName(misses), results, token == null), batchGeminiConcurrency)
+                .then();
+    }
+
+    private Mono<Void> analyzeBatchPrompt(List<RepositoryCommits> batch, Map<String, BatchAnalysisRequest.Repository> repositories,
+                                          Map<String, BatchAnalysisResponse.Item> results, boolean shared) {
+        List<String> names = batch.stream().map(RepositoryCommits::repository).toList();
+        Function<String, Mono<String>> gemini = shared ? geminiClient::generate : geminiClient::generateUncached;
+        // 単独のリポジトリは通常の分析と同じ経路にする（大きければmap-reduceで要約される）
+        Mono<Map<String, String>> analyzed = batch.size() == 1
+                ? callGeminiApi(batch.get(0).messages(), gemini).map(text -> Map.of(names.get(0), text))
+                : gemini.apply(buildBatchPrompt(batch)).map(text -> splitSections(text, names));
+        return timed("gemini", analyzed)
+                .flatMapMany(sections -> Flux.fromIterable(names).concatMap(name -> {
+                    String section = sections.get(name);
+                    if (section == null) {
+                        results.put(name, new BatchAnalysisResponse.Item(name, "error", null,
+                                "Geminiの応答にこのリポジトリの結果が含まれていませんでした。"));
+                        return Mono.empty();
                     }
-                    return textNode.asText();
+                    BatchAnalysisRequest.Repository repository = repositories.get(name);
+                    AnalysisResponse result = new AnalysisResponse(name, section, "gemini-1.5-flash");
+                    Mono<AnalysisResponse> saved = shared
+                            ? saveCache(repository.owner(), repository.repo(), result)
+                            : Mono.just(result.withFreshness(OffsetDateTime.now(), AnalysisResponse.FRESH));
+                    return saved
+                            .doOnNext(response -> results.put(name, new BatchAnalysisResponse.Item(name, "success", response, null)));
+                }))
+                .onErrorResume(error -> {
+                    names.forEach(name -> results.putIfAbsent(name, errorItem(name, error)));
+                    return Mono.empty();
                 })
-                .doOnError(error -> System.err.println("Gemini API呼び出し中にエラー発生: " + error.getMessage()));
+                .then();
+    }
+
+    private static Map<String, BatchAnalysisRequest.Repository> byFullName(List<BatchAnalysisRequest.Repository> repositories) {
+        Map<String, BatchAnalysisRequest.Repository> byName = new HashMap<>();
+        repositories.forEach(repository -> byName.put(repository.fullName(), repository));
+        return byName;
+    }
+
+    private static BatchAnalysisResponse.Item errorItem(String repository, Throwable error) {
+        return new BatchAnalysisResponse.Item(repository, "error", null, error.getMessage());
     }
 
-    private Mono<String> callGeminiApi(List<String> commitMessages) {
-        String prompt = "以下のGitコミットメッセージを分析し、次の4項目について日本語で箇条書きで簡潔にまとめてください。各項目は配列ではなく、1つのまとまった文章として返してください。\n" +
-                "1. 今週のハイライト\n" +
-                "2. おすすめの改善点\n" +
-                "3. トレンド分析\n" +
-                "4. 今週の総評\n" +
-                "\n【出力例】\n" +
-                "今週のハイライト\n機能追加をリードした1週間でした。特にユーザー認証機能の実装で高い貢献度を示しています。\n\n" +
-                "おすすめの改善点\n次はコードレビューにも挑戦してみましょう。チーム全体のコード品質向上に貢献できます。\n\n" +
-                "トレンド分析\nバックエンド開発に集中していますが、フロントエンドスキルも伸ばすとフルスタック開発者として成長できます。\n\n" +
-                "今週の総評\n全体的に活発な開発活動を行っています。特に機能追加において優れた成果を上げており、チームの主要な貢献者として活躍しています。継続的な成長が期待できます。\n";
-        return executeGeminiCall(prompt);
+    record RepositoryCommits(String repository, List<String> messages) {
+    }
+
+    /**
+     * 先頭から順に、見積もりトークン数が予算に収まるだけリポジトリを詰める。
+     * 1リポジトリだけで予算を超える場合は、単独のバッチにする（分析時にmap-reduceで要約する）。
+     */
+    static List<List<RepositoryCommits>> packBatches(List<RepositoryCommits> repositories, int tokenBudget) {
+        int available = Math.max(1, tokenBudget - PromptTokens.estimate(BATCH_INSTRUCTIONS));
+        List<List<RepositoryCommits>> batches = new ArrayList<>();
+        List<RepositoryCommits> current = new ArrayList<>();
+        int used = 0;
+        for (RepositoryCommits repository : repositories) {
+            int tokens = PromptTokens.estimate(formatSection(repository));
+            if (tokens > available) {
+                batches.add(List.of(repository));
+                continue;
+            }
+            if (!current.isEmpty() && used + tokens > available) {
+                batches.add(current);
+                current = new ArrayList<>();
+                used = 0;
+            }
+            current.add(repository);
+            used += tokens;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    private static String buildBatchPrompt(List<RepositoryCommits> batch) {
+        StringBuilder prompt = new StringBuilder(BATCH_INSTRUCTIONS);
+        batch.forEach(repository -> prompt.append(formatSection(repository)));
+        return prompt.toString();
+    }
+
+    private static String formatSection(RepositoryCommits repository) {
+        return "### " + repository.repository() + "\n" + formatCommitMessages(repository.messages()) + "\n";
+    }
+
+    private static String formatCommitMessages(List<String> messages) {
+        StringBuilder text = new StringBuilder();
+        messages.forEach(message -> text.append("- ").append(subjectLine(message)).append("\n"));
+        return text.toString();
+    }
+
+    // 複数行のメッセージは1行目（件名）だけを使う
+    private static String subjectLine(String message) {
+        return message.lines().findFirst().orElse("");
+    }
+
+    /**
+     * 「### owner/repo」の見出し行で応答を分割する。
+     * 1リポジトリだけのプロンプトで見出しが無い場合は、応答全体をそのリポジトリの結果とみなす。
+     */
+    static Map<String, String> splitSections(String text, List<String> repositories) {
+        Map<String, String> sections = new HashMap<>();
+        String currentName = null;
+        StringBuilder current = new StringBuilder();
+        for (String line : text.split("\n", -1)) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("###")) {
+                String name = trimmed.substring(3).replace("`", "").trim();
+                if (repositories.contains(name)) {
+                    putSection(sections, currentName, current);
+                    currentName = name;
+                    current = new StringBuilder();
+                    continue;
+                }
+            }
+            if (currentName != null) {
+                current.append(line).append("\n");
+            }
+        }
+        putSection(sections, currentName, current);
+        if (sections.isEmpty() && repositories.size() == 1 && !text.isBlank()) {
+            sections.put(repositories.get(0), text.trim());
+        }
+        return sections;
+    }
+
+    private static void putSection(Map<String, String> sections, String name, StringBuilder text) {
+        if (name != null && !text.toString().isBlank()) {
+            sections.putIfAbsent(name, text.toString().trim());
+        }
     }
 
     // --- デバッグ用メソッド ---
 
     public Mono<String> testGeminiOnly() {
         String prompt = "Hello, world!";
-        return executeGeminiCall(prompt);
+        return geminiClient.generate(prompt);
     }
 
     // --- データベース操作ヘルパー ---
 
-    private void saveCache(String owner, String repo, AnalysisResponse response) {
-        AnalysisCache newCache = new AnalysisCache();
-        newCache.setRepoOwner(owner);
-        newCache.setRepoName(repo);
-        newCache.setAnalyzedAt(OffsetDateTime.now());
-        try {
-            newCache.setResultJson(objectMapper.writeValueAsString(response));
-            cacheRepository.save(newCache);
-        } catch (JsonProcessingException e) {
-            System.err.println("キャッシュの保存に失敗しました: " + e.getMessage());
-        }
+    /**
+     * 分析結果を保存し、分析日時と鮮度を付けた結果を返す。
+     */
+    private Mono<AnalysisResponse> saveCache(String owner, String repo, AnalysisResponse response) {
+        OffsetDateTime analyzedAt = OffsetDateTime.now();
+        return timed("persist", databaseScheduler.run(() -> {
+                    try {
+                        // 分析日時と鮮度は行の analyzed_at から毎回求めるので、JSONには含めない
+                        Timer.Sample sample = Timer.start(meterRegistry);
+                        String json = objectMapper.writeValueAsString(response.withFreshness(null, null));
+                        sample.stop(meterRegistry.timer("analysis.json", "operation", "serialize"));
+                        if (cacheRepository.upsert(owner, repo, json, analyzedAt) > 0) {
+                            resultCache.put(owner, repo, response, analyzedAt);
+                        } else {
+                            // より新しい行が既にあるので、手元の古い結果を捨てて次回はL2から読み直す
+                            resultCache.invalidate(owner, repo);
+                        }
+                    } catch (JsonProcessingException e) {
+                        System.err.println("キャッシュの保存に失敗しました: " + e.getMessage());
+                    }
+                }))
+                .onErrorResume(error -> {
+                    // 保存に失敗しても分析結果は返す
+                    System.err.println("キャッシュの保存に失敗しました: " + error.getMessage());
+                    return Mono.empty();
+                })
+                .thenReturn(response.withFreshness(analyzedAt, AnalysisResponse.FRESH));
+    }
+
+    /**
+     * 分析の段階（cache_lookup / github_fetch / gemini / persist）ごとの所要時間を analysis.stage に記録する。
+     */
+    private <T> Mono<T> timed(String stage, Mono<T> source) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return source.doFinally(signal -> sample.stop(meterRegistry.timer("analysis.stage",
+                    "stage", stage, "outcome", outcome(signal))));
+        });
+    }
+
+    private static String outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_ERROR -> "error";
+            case CANCEL -> "cancelled";
+            default -> "success";
+        };
+    }
+
+    private void countLookup(String result) {
+        meterRegistry.counter("analysis.cache.lookups", "result", result).increment();
     }
 
-    private void logRequest(Long userId, String owner, String repo, String status) {
-        AnalysisRequest newRequest = new AnalysisRequest();
-        newRequest.setUserId(userId);
-        newRequest.setRepoOwner(owner);
-        newRequest.setRepoName(repo);
-        newRequest.setStatus(status);
-        newRequest.setRequestedAt(OffsetDateTime.now());
-        requestRepository.save(newRequest);
+    private void logRequest(Long githubId, String owner, String repo, String status) {
+        // リアクティブのスレッドでDBを待たないよう、書き込みは AnalysisAuditWriter がまとめて行う
+        auditWriter.record(githubId, owner, repo, status);
     }
 
     private List<String> extractCommitMessages(JsonNode commitsArray) {
@@ -224,89 +947,40 @@ public class AnalysisService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * ユーザーの活動分析
+     * GitHubからは前回取り込み以降の差分だけを取得し、集計は日ごとの集計テーブルから期間の日数分だけ読む。
+     */
     public Mono<AnalysisDto> analyzeUserActivity(User user, int durationDays) {
-        // GitHub APIを呼び出す (ユーザーのトークンを使用)
-        return fetchAllEvents(user)
-                .takeWhile(event -> {
-                    // イベントの日付が期間内か判定
-                    String createdAt = event.path("created_at").asText("");
-                    if (createdAt.isEmpty()) return true;
-                    LocalDate eventDate = LocalDate.parse(createdAt.substring(0, 10));
-                    return !eventDate.isBefore(LocalDate.now().minusDays(durationDays));
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        LocalDate since = today.minusDays(durationDays);
+        return ingestionService.ingest(user)
+                .onErrorResume(error -> {
+                    // 差分取得に失敗しても、取り込み済みのデータで応答する
+                    System.err.println("GitHubイベントの取り込みに失敗しました: " + error.getMessage());
+                    return Mono.empty();
                 })
-                .collectList()
-                .flatMap(events -> {
-                    // PushEventのみ抽出し、コミット詳細取得
-                    List<JsonNode> pushEvents = events.stream()
-                            .filter(event -> "PushEvent".equals(event.path("type").asText()))
-                            .toList();
-                    return Flux.fromIterable(pushEvents)
-                            .flatMap(this::getCommitDetails)
-                            .collectList()
-                            .map(commitDetails -> buildAnalysisDto(events, commitDetails, durationDays));
-                });
+                .then(rollupService.load(user.getId(), since, today))
+                .map(series -> buildAnalysisDto(series.sum(since, today), since, today));
     }
 
-    private Flux<JsonNode> fetchAllEvents(User user) {
-        // ページネーション対応（最大300件まで取得）
-        return Flux.range(1, 3)
-                .concatMap(page -> githubWebClient.get()
-                        .uri(uriBuilder -> uriBuilder
-                                .path("/users/{username}/events/public")
-                                .queryParam("per_page", 100)
-                                .queryParam("page", page)
-                                .build(user.getUsername()))
-                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + user.getGithubAccessToken())
-                        .retrieve()
-                        .bodyToFlux(JsonNode.class)
-                )
-                .flatMap(Flux::fromIterable);
-    }
-
-    private Mono<JsonNode> getCommitDetails(JsonNode pushEvent) {
-        // PushEventのpayload.commits配列からコミットメッセージやファイル情報を抽出
-        // ここではpayload.commitsをそのまま返す
-        JsonNode commits = pushEvent.path("payload").path("commits");
-        if (commits.isArray()) {
-            // 1つのPushEventに複数コミットが含まれる
-            return Mono.just(commits);
-        }
-        return Mono.empty();
-    }
-
-    private AnalysisDto buildAnalysisDto(List<JsonNode> events, List<JsonNode> commitDetails, int durationDays) {
-        // コミット集計
-        long totalCommits = 0;
-        long featureCommits = 0;
-        long fixCommits = 0;
-        int backend = 0, frontend = 0, other = 0;
-
-        for (JsonNode commitsArray : commitDetails) {
-            for (JsonNode commit : commitsArray) {
-                totalCommits++;
-                String msg = commit.path("message").asText("").toLowerCase();
-                if (msg.contains("feature") || msg.contains("add") || msg.contains("implement")) featureCommits++;
-                if (msg.contains("fix") || msg.contains("bug")) fixCommits++;
-                // ファイルパスやリポジトリ名から分布を推定（例: ファイル名にfrontend, backendが含まれる場合）
-                String url = commit.path("url").asText("");
-                if (url.contains("frontend")) frontend++;
-                else if (url.contains("backend")) backend++;
-                else other++;
-            }
-        }
-        int sum = backend + frontend + other;
+    static AnalysisDto buildAnalysisDto(DailyActivitySeries.Totals totals, LocalDate since, LocalDate until) {
+        long backend = totals.backendFiles();
+        long frontend = totals.frontendFiles();
+        long other = totals.otherFiles();
+        long sum = backend + frontend + other;
         List<Map<String, Object>> workDist = List.of(
-                Map.of("area", "Backend", "percentage", sum > 0 ? backend * 100 / sum : 0),
-                Map.of("area", "Frontend", "percentage", sum > 0 ? frontend * 100 / sum : 0),
-                Map.of("area", "Other", "percentage", sum > 0 ? other * 100 / sum : 0)
+                Map.of("area", "Backend", "percentage", sum > 0 ? (int) (backend * 100 / sum) : 0),
+                Map.of("area", "Frontend", "percentage", sum > 0 ? (int) (frontend * 100 / sum) : 0),
+                Map.of("area", "Other", "percentage", sum > 0 ? (int) (other * 100 / sum) : 0)
         );
         return AnalysisDto.builder()
-                .startDate(LocalDate.now().minusDays(durationDays).toString())
-                .endDate(LocalDate.now().toString())
+                .startDate(since.toString())
+                .endDate(until.toString())
                 .weeklyTrend(AnalysisDto.WeeklyTrend.builder()
-                        .totalCommits(totalCommits)
-                        .featureCommits(featureCommits)
-                        .fixCommits(fixCommits)
+                        .totalCommits(totals.totalCommits())
+                        .featureCommits(totals.featureCommits())
+                        .fixCommits(totals.fixCommits())
                         .build())
                 .developmentTendency(AnalysisDto.DevelopmentTendency.builder()
                         .workDistribution(workDist)
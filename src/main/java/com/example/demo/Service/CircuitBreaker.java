@@ -0,0 +1,176 @@
+package com.example.demo.Service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Predicate;
+
+/**
+ * 上流サービス呼び出し用のサーキットブレーカー。
+ * 直近 windowSize 回の呼び出しのうち失敗の割合が閾値を超えたら開き、openDuration の間は呼び出さずに503で失敗させる。
+ * その後は1回だけ試し、成功すれば閉じ、失敗すればまた開く。
+ * どのエラーを失敗として数えるかは isFailure で決める（4xxなど呼び出し側の問題は数えない）。
+ */
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final Duration openDuration;
+    private final Predicate<Throwable> isFailure;
+    private final Clock clock;
+
+    // 直近の呼び出し結果のリングバッファ（true が失敗）
+    private final boolean[] window;
+    private int next;
+    private int calls;
+    private int failures;
+    private State state = State.CLOSED;
+    private Instant openedAt;
+    private boolean trialInFlight;
+
+    CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                   Duration openDuration, Predicate<Throwable> isFailure, Clock clock) {
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.isFailure = isFailure;
+        this.clock = clock;
+    }
+
+    <T> Mono<T> protect(Mono<T> source) {
+        return Mono.defer(() -> {
+            if (!tryAcquire()) {
+                return Mono.error(rejected());
+            }
+            return source
+                    .doOnSuccess(value -> onSuccess())
+                    .doOnError(this::onError)
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            onCancel();
+                        }
+                    });
+        });
+    }
+
+    <T> Flux<T> protect(Flux<T> source) {
+        return Flux.defer(() -> {
+            if (!tryAcquire()) {
+                return Flux.error(rejected());
+            }
+            return source
+                    .doOnComplete(this::onSuccess)
+                    .doOnError(this::onError)
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            onCancel();
+                        }
+                    });
+        });
+    }
+
+    synchronized State getState() {
+        if (state == State.OPEN && !clock.instant().isBefore(openedAt.plus(openDuration))) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.instant().isBefore(openedAt.plus(openDuration))) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            reset();
+            return;
+        }
+        record(false);
+    }
+
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (calls >= minimumCalls && (double) failures / calls >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    private void onError(Throwable error) {
+        if (isFailure.test(error)) {
+            onFailure();
+        } else {
+            onSuccess();
+        }
+    }
+
+    private synchronized void onCancel() {
+        // 試行中にキャンセルされた場合は、次の呼び出しで改めて試す
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    private void record(boolean failed) {
+        if (calls == window.length) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        window[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.instant();
+        System.err.println(name + " へのサーキットブレーカーを開きました（" + openDuration.toSeconds() + "秒間呼び出しを止めます）");
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        trialInFlight = false;
+        next = 0;
+        calls = 0;
+        failures = 0;
+    }
+
+    private ResponseStatusException rejected() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                name + " が不安定なため、一時的に呼び出しを止めています。しばらくしてから再試行してください。");
+    }
+}
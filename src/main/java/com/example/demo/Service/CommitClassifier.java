@@ -0,0 +1,279 @@
+package com.example.demo.Service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * コミットメッセージを機能追加・バグ修正に分類する。
+ * Conventional Commits の接頭辞（feat: / fix(scope): など）があればその種類で判定し、
+ * 無ければキーワード（大文字小文字を区別しない部分一致）で判定する。
+ * キーワードは起動時にAho–Corasickのオートマトンへまとめてコンパイルし、
+ * メッセージを1回走査するだけで全キーワードを照合する。照合中はオブジェクトを生成しない。
+ */
+@Component
+public class CommitClassifier {
+
+    public static final int FEATURE = 1;
+    public static final int FIX = 1 << 1;
+
+    /**
+     * 接頭辞として扱う Conventional Commits の種類。「Bugfix:」「parser:」「WIP:」のような
+     * 任意の「単語:」は接頭辞とみなさず、キーワードで判定する。
+     * V11 の再集計（user_daily_activity）と同じ一覧にしておくこと。
+     */
+    static final String[] CONVENTIONAL_TYPES = {
+            "feat", "fix", "chore", "docs", "refactor", "test", "style", "perf", "build", "ci", "revert"
+    };
+
+    public static final int AREA_OTHER = 0;
+    public static final int AREA_BACKEND = 1;
+    public static final int AREA_FRONTEND = 2;
+
+    private final Matcher keywordMatcher;
+    private final Matcher areaMatcher;
+    private final String[] featureTypes;
+    private final String[] fixTypes;
+    private final String[] headerTypes;
+
+    public CommitClassifier(
+            @Value("${analysis.classifier.feature.keywords:feature,add,implement}") String[] featureKeywords,
+            @Value("${analysis.classifier.fix.keywords:fix,bug}") String[] fixKeywords,
+            @Value("${analysis.classifier.feature.types:feat}") String[] featureTypes,
+            @Value("${analysis.classifier.fix.types:fix}") String[] fixTypes,
+            @Value("${analysis.classifier.frontend.keywords:frontend,.tsx,.jsx,.vue,.svelte,.css,.scss,.html}") String[] frontendKeywords,
+            @Value("${analysis.classifier.backend.keywords:backend,.java,.kt,.py,.go,.rb,.php,.sql}") String[] backendKeywords
+    ) {
+        this.keywordMatcher = new Matcher(new String[][]{featureKeywords, fixKeywords}, new int[]{FEATURE, FIX});
+        // 同じ文字列に両方含まれる場合は従来どおりフロントエンドを優先する
+        this.areaMatcher = new Matcher(new String[][]{frontendKeywords, backendKeywords}, new int[]{1 << AREA_FRONTEND, 1 << AREA_BACKEND});
+        this.featureTypes = normalize(featureTypes);
+        this.fixTypes = normalize(fixTypes);
+        // 設定で追加した種類も接頭辞として扱う
+        this.headerTypes = Stream.of(CONVENTIONAL_TYPES, this.featureTypes, this.fixTypes)
+                .flatMap(Arrays::stream)
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    /**
+     * FEATURE / FIX のビットの組み合わせを返す。どちらにも当たらなければ0。
+     */
+    public int classify(CharSequence message) {
+        if (message == null) {
+            return 0;
+        }
+        int typeEnd = conventionalTypeEnd(message, headerTypes);
+        if (typeEnd > 0) {
+            if (matchesAny(message, typeEnd, featureTypes)) {
+                return FEATURE;
+            }
+            if (matchesAny(message, typeEnd, fixTypes)) {
+                return FIX;
+            }
+            // docs: / chore: などは機能追加にも修正にも数えない
+            return 0;
+        }
+        return keywordMatcher.scan(message);
+    }
+
+    /**
+     * 文字列（パスやURL）から作業領域を推定する。AREA_FRONTEND / AREA_BACKEND / AREA_OTHER のいずれか。
+     */
+    public int classifyArea(CharSequence text) {
+        if (text == null) {
+            return AREA_OTHER;
+        }
+        int found = areaMatcher.scan(text);
+        if ((found & (1 << AREA_FRONTEND)) != 0) {
+            return AREA_FRONTEND;
+        }
+        if ((found & (1 << AREA_BACKEND)) != 0) {
+            return AREA_BACKEND;
+        }
+        return AREA_OTHER;
+    }
+
+    /**
+     * 既知の種類で「type(scope)!: 」形式の接頭辞があれば type の終わりの位置、無ければ-1を返す。
+     */
+    static int conventionalTypeEnd(CharSequence message) {
+        return conventionalTypeEnd(message, CONVENTIONAL_TYPES);
+    }
+
+    private static int conventionalTypeEnd(CharSequence message, String[] types) {
+        int length = message.length();
+        int i = 0;
+        while (i < length && isAsciiLetter(message.charAt(i))) {
+            i++;
+        }
+        int typeEnd = i;
+        if (typeEnd == 0 || !matchesAny(message, typeEnd, types)) {
+            return -1;
+        }
+        if (i < length && message.charAt(i) == '(') {
+            while (i < length && message.charAt(i) != ')' && message.charAt(i) != '\n') {
+                i++;
+            }
+            if (i == length || message.charAt(i) != ')') {
+                return -1;
+            }
+            i++;
+        }
+        if (i < length && message.charAt(i) == '!') {
+            i++;
+        }
+        return i < length && message.charAt(i) == ':' ? typeEnd : -1;
+    }
+
+    private static boolean matchesAny(CharSequence message, int typeEnd, String[] types) {
+        for (String type : types) {
+            if (type.length() != typeEnd) {
+                continue;
+            }
+            boolean same = true;
+            for (int i = 0; i < typeEnd && same; i++) {
+                same = Character.toLowerCase(message.charAt(i)) == type.charAt(i);
+            }
+            if (same) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static String[] normalize(String[] values) {
+        return Arrays.stream(values)
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .map(String::toLowerCase)
+                .toArray(String[]::new);
+    }
+
+    /**
+     * 複数キーワードを同時に照合するAho–Corasickオートマトン。
+     * 失敗遷移を事前に展開した遷移表（状態 × 文字クラス）にしておき、1文字につき配列参照1回で進む。
+     * 文字クラスはキーワードに現れる文字だけに番号を振り、それ以外の文字はすべてクラス0（根に戻る）。
+     */
+    static final class Matcher {
+
+        private final int[] asciiClass = new int[128];
+        private final char[] otherChars;
+        private final int[] otherClasses;
+        private final int classCount;
+        private final int[] transitions;
+        private final int[] outputs;
+
+        Matcher(String[][] keywordGroups, int[] groupBits) {
+            List<String> keywords = new ArrayList<>();
+            List<Integer> bits = new ArrayList<>();
+            TreeSet<Character> alphabet = new TreeSet<>();
+            for (int g = 0; g < keywordGroups.length; g++) {
+                for (String keyword : normalize(keywordGroups[g])) {
+                    keywords.add(keyword);
+                    bits.add(groupBits[g]);
+                    for (char c : keyword.toCharArray()) {
+                        alphabet.add(c);
+                    }
+                }
+            }
+
+            // 文字クラスの割り当て（0は「キーワードに無い文字」）
+            List<Character> others = new ArrayList<>();
+            int nextClass = 1;
+            for (char c : alphabet) {
+                if (c < 128) {
+                    asciiClass[c] = nextClass++;
+                } else {
+                    others.add(c);
+                }
+            }
+            otherChars = new char[others.size()];
+            otherClasses = new int[others.size()];
+            for (int i = 0; i < others.size(); i++) {
+                otherChars[i] = others.get(i);
+                otherClasses[i] = nextClass++;
+            }
+            classCount = nextClass;
+
+            // トライを作る
+            int maxStates = 1 + keywords.stream().mapToInt(String::length).sum();
+            int[] table = new int[maxStates * classCount];
+            Arrays.fill(table, -1);
+            int[] out = new int[maxStates];
+            int states = 1;
+            for (int k = 0; k < keywords.size(); k++) {
+                int state = 0;
+                for (char c : keywords.get(k).toCharArray()) {
+                    int index = state * classCount + charClass(c);
+                    if (table[index] < 0) {
+                        table[index] = states++;
+                    }
+                    state = table[index];
+                }
+                out[state] |= bits.get(k);
+            }
+
+            // 幅優先で失敗遷移を計算し、遷移表に展開する
+            int[] fail = new int[states];
+            int[] queue = new int[states];
+            int head = 0;
+            int tail = 0;
+            for (int cls = 0; cls < classCount; cls++) {
+                int next = table[cls];
+                if (next < 0) {
+                    table[cls] = 0;
+                } else {
+                    fail[next] = 0;
+                    queue[tail++] = next;
+                }
+            }
+            while (head < tail) {
+                int state = queue[head++];
+                out[state] |= out[fail[state]];
+                for (int cls = 0; cls < classCount; cls++) {
+                    int index = state * classCount + cls;
+                    int next = table[index];
+                    if (next < 0) {
+                        table[index] = table[fail[state] * classCount + cls];
+                    } else {
+                        fail[next] = table[fail[state] * classCount + cls];
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            this.transitions = Arrays.copyOf(table, states * classCount);
+            this.outputs = Arrays.copyOf(out, states);
+        }
+
+        /**
+         * 含まれているキーワードのビットの和を返す。
+         */
+        int scan(CharSequence text) {
+            int state = 0;
+            int found = 0;
+            for (int i = 0; i < text.length(); i++) {
+                state = transitions[state * classCount + charClass(Character.toLowerCase(text.charAt(i)))];
+                found |= outputs[state];
+            }
+            return found;
+        }
+
+        private int charClass(char c) {
+            if (c < 128) {
+                return asciiClass[c];
+            }
+            int index = Arrays.binarySearch(otherChars, c);
+            return index >= 0 ? otherClasses[index] : 0;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.demo.Service;
+
+import com.example.demo.entity.ContributionCommit;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.sql.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * コミットが変更したファイルの作業領域（バックエンド / フロントエンド / その他）別の件数。
+ * GitHubのコミット詳細APIから取得し、SHAごとに commit_details テーブルとメモリに永続的にキャッシュする。
+ * SHAが同じコミットの内容は変わらないので、ユーザーや集計期間が違っても取得は1コミットにつき1回で済む。
+ */
+@Service
+public class CommitDetailService {
+
+    private static final String SELECT_SQL =
+            "SELECT sha, backend_files, frontend_files, other_files FROM commit_details WHERE sha = ANY(?)";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO commit_details (sha, backend_files, frontend_files, other_files) " +
+            "VALUES (?, ?, ?, ?) ON CONFLICT (sha) DO NOTHING";
+
+    public record FileSplit(int backend, int frontend, int other) {
+    }
+
+    private final GitHubApiClient githubApiClient;
+    private final CommitClassifier commitClassifier;
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseScheduler databaseScheduler;
+    private final int fetchConcurrency;
+    private final int maxFetchPerRequest;
+    private final Map<String, FileSplit> entries;
+
+    public CommitDetailService(
+            GitHubApiClient githubApiClient,
+            CommitClassifier commitClassifier,
+            JdbcTemplate jdbcTemplate,
+            DatabaseScheduler databaseScheduler,
+            @Value("${analysis.commit-details.fetch-concurrency:4}") int fetchConcurrency,
+            @Value("${analysis.commit-details.max-fetch-per-request:200}") int maxFetchPerRequest,
+            @Value("${analysis.commit-details.memory-max-size:50000}") int memoryMaxSize
+    ) {
+        this.githubApiClient = githubApiClient;
+        this.commitClassifier = commitClassifier;
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseScheduler = databaseScheduler;
+        this.fetchConcurrency = fetchConcurrency;
+        this.maxFetchPerRequest = maxFetchPerRequest;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FileSplit> eldest) {
+                return size() > memoryMaxSize;
+            }
+        });
+    }
+
+    /**
+     * コミットごとのファイル件数を返す（メモリ → DB → GitHub）。
+     * 1回のリクエストでGitHubから取得するのは max-fetch-per-request 件までで、取得できなかったコミットは結果に含まない。
+     */
+    public Mono<Map<String, FileSplit>> getFileSplits(List<ContributionCommit> commits, String userToken) {
+        Map<String, FileSplit> result = new HashMap<>();
+        Map<String, ContributionCommit> missing = new LinkedHashMap<>();
+        for (ContributionCommit commit : commits) {
+            FileSplit cached = entries.get(commit.getSha());
+            if (cached != null) {
+                result.put(commit.getSha(), cached);
+            } else if (commit.getUrl() != null) {
+                missing.putIfAbsent(commit.getSha(), commit);
+            }
+        }
+        if (missing.isEmpty()) {
+            return Mono.just(result);
+        }
+
+        return databaseScheduler.call(() -> load(new ArrayList<>(missing.keySet())))
+                .onErrorResume(error -> {
+                    System.err.println("コミット詳細キャッシュの読み込みに失敗しました: " + error.getMessage());
+                    return Mono.just(Map.of());
+                })
+                .flatMap(stored -> {
+                    stored.forEach((sha, split) -> {
+                        entries.put(sha, split);
+                        result.put(sha, split);
+                        missing.remove(sha);
+                    });
+                    return Flux.fromIterable(missing.values())
+                            .take(maxFetchPerRequest)
+                            .flatMap(commit -> fetch(commit, userToken), fetchConcurrency)
+                            .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+                })
+                .flatMap(fetched -> {
+                    fetched.forEach((sha, split) -> {
+                        entries.put(sha, split);
+                        result.put(sha, split);
+                    });
+                    return databaseScheduler.run(() -> save(fetched))
+                            .onErrorResume(error -> {
+                                System.err.println("コミット詳細キャッシュの保存に失敗しました: " + error.getMessage());
+                                return Mono.empty();
+                            })
+                            .thenReturn(result);
+                });
+    }
+
+    private Mono<Map.Entry<String, FileSplit>> fetch(ContributionCommit commit, String userToken) {
+        // イベントに含まれるURLは https://api.github.com/repos/{owner}/{repo}/commits/{sha}
+        String path = URI.create(commit.getUrl()).getPath();
+        return githubApiClient.getJsonPreferringShared(uriBuilder -> uriBuilder.path(path).build(), userToken)
+                .map(body -> Map.entry(commit.getSha(), split(body.path("files"))))
+                .onErrorResume(error -> {
+                    System.err.println("コミット詳細の取得に失敗しました: " + commit.getSha() + " " + error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private FileSplit split(JsonNode files) {
+        int backend = 0, frontend = 0, other = 0;
+        for (JsonNode file : files) {
+            switch (commitClassifier.classifyArea(file.path("filename").asText())) {
+                case CommitClassifier.AREA_BACKEND -> backend++;
+                case CommitClassifier.AREA_FRONTEND -> frontend++;
+                default -> other++;
+            }
+        }
+        return new FileSplit(backend, frontend, other);
+    }
+
+    private Map<String, FileSplit> load(List<String> shas) {
+        Map<String, FileSplit> stored = new HashMap<>();
+        jdbcTemplate.query(SELECT_SQL, ps -> {
+            Array array = ps.getConnection().createArrayOf("varchar", shas.toArray());
+            ps.setArray(1, array);
+        }, rs -> {
+            stored.put(rs.getString("sha"), new FileSplit(
+                    rs.getInt("backend_files"), rs.getInt("frontend_files"), rs.getInt("other_files")));
+        });
+        return stored;
+    }
+
+    private void save(Map<String, FileSplit> fetched) {
+        if (fetched.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        fetched.forEach((sha, split) -> rows.add(new Object[]{sha, split.backend(), split.frontend(), split.other()}));
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+}
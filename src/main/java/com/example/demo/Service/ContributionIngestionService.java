@@ -0,0 +1,294 @@
+package com.example.demo.Service;
+
+import com.example.demo.dto.GitHubEvent;
+import com.example.demo.entity.ContributionCommit;
+import com.example.demo.entity.User;
+import com.example.demo.entity.UserContribution;
+import com.example.demo.repository.UserContributionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.util.UriBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * GitHubの公開イベントを user_contributions / contribution_commits に差分で取り込む。
+ * 保存済みの最新イベントをウォーターマークとし、それより新しいページだけを取得する。
+ * 新しく保存したコミットは、同じトランザクションで user_daily_activity の日ごとの集計にも加算する。
+ * 作業領域はいったんURLから推定して加算し（contribution_commits.area_guess に記録）、
+ * コミット詳細（変更ファイル）は保存後に非同期で取得して、届いた分から推定値を実際の件数に置き換える。
+ */
+@Service
+public class ContributionIngestionService {
+
+    private static final int PER_PAGE = 100;
+    // GitHubのイベントAPIは最大300件（3ページ）までしか返さない
+    private static final int MAX_PAGES = 3;
+
+    private static final String INSERT_EVENT_SQL =
+            "INSERT INTO user_contributions (event_id, user_id, event_type, repo_name, created_at) " +
+            "VALUES (?, ?, ?, ?, ?) ON CONFLICT (event_id) DO NOTHING";
+
+    private static final String INSERT_COMMIT_SQL =
+            "INSERT INTO contribution_commits (event_id, user_id, sha, message, url, created_at, area_guess) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT (event_id, sha) DO NOTHING";
+
+    private static final String SELECT_GUESSED_SQL =
+            "SELECT id, sha, url, area_guess, created_at FROM contribution_commits " +
+            "WHERE user_id = ? AND area_guess IS NOT NULL AND url IS NOT NULL ORDER BY created_at DESC LIMIT ?";
+
+    // 推定値が残っている場合だけ更新する（同じコミットを二重に補正しない）
+    private static final String CLEAR_GUESS_SQL =
+            "UPDATE contribution_commits SET area_guess = NULL WHERE id = ? AND area_guess = ?";
+
+    // 1回の補正で読む未反映コミットの上限（GitHubから取得するのはさらに max-fetch-per-request 件まで）
+    private static final int MAX_GUESSED_PER_CORRECTION = 1000;
+
+    private final GitHubApiClient githubApiClient;
+    private final GitHubEventDecoder eventDecoder;
+    private final UserContributionRepository contributionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DatabaseScheduler databaseScheduler;
+    private final CommitDetailService commitDetailService;
+    private final CommitClassifier commitClassifier;
+    private final UserActivityRollupService rollupService;
+    private final Duration minInterval;
+
+    // ユーザーごとの最終取り込み時刻（短時間の連続アクセスでGitHubを叩かないため）
+    private final Map<Long, Instant> lastIngestedAt = new ConcurrentHashMap<>();
+    // 作業領域の補正を実行中のユーザー
+    private final Set<Long> correcting = ConcurrentHashMap.newKeySet();
+
+    public ContributionIngestionService(
+            GitHubApiClient githubApiClient,
+            GitHubEventDecoder eventDecoder,
+            UserContributionRepository contributionRepository,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            DatabaseScheduler databaseScheduler,
+            CommitDetailService commitDetailService,
+            CommitClassifier commitClassifier,
+            UserActivityRollupService rollupService,
+            @Value("${analysis.ingestion.min-interval:1m}") Duration minInterval
+    ) {
+        this.githubApiClient = githubApiClient;
+        this.eventDecoder = eventDecoder;
+        this.contributionRepository = contributionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.databaseScheduler = databaseScheduler;
+        this.commitDetailService = commitDetailService;
+        this.commitClassifier = commitClassifier;
+        this.rollupService = rollupService;
+        this.minInterval = minInterval;
+    }
+
+    /**
+     * ウォーターマーク以降のイベントを取得して保存する。
+     * 直近 min-interval 以内に取り込み済みのユーザーは何もしない。
+     * コミット詳細の取得は待たず、保存後にバックグラウンドで作業領域を補正する。
+     */
+    public Mono<Void> ingest(User user) {
+        Instant now = Instant.now();
+        Instant last = lastIngestedAt.get(user.getId());
+        if (last != null && last.plus(minInterval).isAfter(now)) {
+            return Mono.empty();
+        }
+
+        return databaseScheduler.call(() -> contributionRepository.findTopByUserIdOrderByCreatedAtDesc(user.getId()))
+                .flatMap(watermark -> fetchNewEvents(user, watermark).collectList())
+                .flatMap(events -> databaseScheduler.run(() -> persist(user, events)))
+                .doOnSuccess(v -> {
+                    lastIngestedAt.put(user.getId(), now);
+                    correctGuessedAreas(user).subscribe(null, error ->
+                            System.err.println("作業領域の補正に失敗しました: " + user.getId() + " " + error.getMessage()));
+                })
+                .then();
+    }
+
+    /**
+     * 作業領域を推定のまま加算したコミットの詳細を取得し、取得できた分の集計を実際のファイル件数に置き換える。
+     * 取得件数の上限を超えた分や取得に失敗した分は推定のまま残り、次回の取り込み後に再び補正する。
+     */
+    private Mono<Void> correctGuessedAreas(User user) {
+        return Mono.defer(() -> correcting.add(user.getId())
+                ? correct(user).doFinally(signal -> correcting.remove(user.getId()))
+                : Mono.empty());
+    }
+
+    private Mono<Void> correct(User user) {
+        return databaseScheduler.call(() -> jdbcTemplate.query(SELECT_GUESSED_SQL, (rs, rowNum) -> new GuessedCommit(
+                        rs.getLong("id"),
+                        rs.getString("sha"),
+                        rs.getString("url"),
+                        rs.getInt("area_guess"),
+                        rs.getObject("created_at", OffsetDateTime.class).atZoneSameInstant(ZoneOffset.UTC).toLocalDate()),
+                        user.getId(), MAX_GUESSED_PER_CORRECTION))
+                .filter(guessed -> !guessed.isEmpty())
+                .flatMap(guessed -> commitDetailService.getFileSplits(toCommits(guessed), user.getGithubAccessToken())
+                        .filter(fileSplits -> !fileSplits.isEmpty())
+                        .flatMap(fileSplits -> databaseScheduler.run(() -> applyFileSplits(user, guessed, fileSplits))));
+    }
+
+    /**
+     * 新しい順に並んだイベントを1件ずつ読み、ウォーターマークに到達した時点で読み込みを打ち切る。
+     * 打ち切った時点で以降のページは取得しない（2ページ目以降は現在のページの残りも受信しない）。
+     */
+    private Flux<GitHubEvent> fetchNewEvents(User user, Optional<UserContribution> watermark) {
+        return fetchEventPages(user, 1)
+                .takeWhile(event -> watermark.map(w -> isNewerThanWatermark(event, w)).orElse(true));
+    }
+
+    /**
+     * 指定ページ以降を順に取得する。ページが満杯だった場合だけ次のページに進む。
+     * 1ページ目は途中で打ち切らずに最後まで受信する。ストリーミングでは最後まで読んだときしかボディが保存されず、
+     * ウォーターマークで打ち切るいつものポーリングで条件付きリクエスト（304）が使えなくなるため。
+     */
+    private Flux<GitHubEvent> fetchEventPages(User user, int page) {
+        AtomicInteger count = new AtomicInteger();
+        Function<UriBuilder, URI> uri = uriBuilder -> uriBuilder
+                .path("/users/{username}/events/public")
+                .queryParam("per_page", PER_PAGE)
+                .queryParam("page", page)
+                .build(user.getUsername());
+        Flux<byte[]> body = page == 1
+                ? githubApiClient.get(uri, user.getGithubAccessToken()).flux()
+                : githubApiClient.stream(uri, user.getGithubAccessToken());
+        return eventDecoder.decode(body)
+                .doOnNext(event -> count.incrementAndGet())
+                .concatWith(Flux.defer(() -> page < MAX_PAGES && count.get() >= PER_PAGE
+                        ? fetchEventPages(user, page + 1)
+                        : Flux.empty()));
+    }
+
+    private boolean isNewerThanWatermark(GitHubEvent event, UserContribution watermark) {
+        // 同時刻のイベントは取りこぼさないよう残し、重複は ON CONFLICT で捨てる
+        return !watermark.getEventId().equals(event.id())
+                && !event.createdAt().isBefore(watermark.getCreatedAt());
+    }
+
+    private static List<ContributionCommit> toCommits(List<GuessedCommit> guessed) {
+        List<ContributionCommit> commits = new ArrayList<>();
+        for (GuessedCommit row : guessed) {
+            ContributionCommit commit = new ContributionCommit();
+            commit.setSha(row.sha());
+            commit.setUrl(row.url());
+            commits.add(commit);
+        }
+        return commits;
+    }
+
+    private void persist(User user, List<GitHubEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<Object[]> eventRows = new ArrayList<>();
+        List<Object[]> commitRows = new ArrayList<>();
+        List<GitHubEvent.Commit> commitSources = new ArrayList<>();
+        for (GitHubEvent event : events) {
+            eventRows.add(new Object[]{
+                    event.id(), user.getId(), event.type(), event.repoName(), event.createdAt()
+            });
+            if ("PushEvent".equals(event.type())) {
+                for (GitHubEvent.Commit commit : event.commits()) {
+                    commitRows.add(new Object[]{
+                            event.id(), user.getId(), commit.sha(), commit.message(), commit.url(), event.createdAt(),
+                            commitClassifier.classifyArea(commit.url())
+                    });
+                    commitSources.add(commit);
+                }
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_EVENT_SQL, eventRows);
+            if (!commitRows.isEmpty()) {
+                int[] inserted = jdbcTemplate.batchUpdate(INSERT_COMMIT_SQL, commitRows);
+                // 実際に追加された行（重複で捨てられなかった行）だけを日ごとの集計に加算する
+                Map<LocalDate, DailyActivitySeries.Day> deltas = new TreeMap<>();
+                for (int i = 0; i < inserted.length; i++) {
+                    if (inserted[i] == 0) {
+                        continue;
+                    }
+                    OffsetDateTime createdAt = (OffsetDateTime) commitRows.get(i)[5];
+                    DailyActivitySeries.Day day = toDay(createdAt.atZoneSameInstant(ZoneOffset.UTC).toLocalDate(),
+                            commitSources.get(i), (int) commitRows.get(i)[6]);
+                    deltas.merge(day.date(), day, ContributionIngestionService::add);
+                }
+                rollupService.increment(user.getId(), deltas.values());
+            }
+        });
+    }
+
+    private DailyActivitySeries.Day toDay(LocalDate date, GitHubEvent.Commit commit, int areaGuess) {
+        int kind = commitClassifier.classify(commit.message());
+        // 詳細が届くまではURL（リポジトリ名）から推定した作業領域に1件として数える
+        return new DailyActivitySeries.Day(date, 1,
+                (kind & CommitClassifier.FEATURE) != 0 ? 1 : 0,
+                (kind & CommitClassifier.FIX) != 0 ? 1 : 0,
+                areaGuess == CommitClassifier.AREA_BACKEND ? 1 : 0,
+                areaGuess == CommitClassifier.AREA_FRONTEND ? 1 : 0,
+                areaGuess == CommitClassifier.AREA_OTHER ? 1 : 0);
+    }
+
+    /**
+     * 推定で加算した1件を差し引き、実際のファイル件数を加算する。推定値を消せた行（他で補正済みでない行）だけを反映する。
+     */
+    private void applyFileSplits(User user, List<GuessedCommit> guessed, Map<String, CommitDetailService.FileSplit> fileSplits) {
+        List<GuessedCommit> resolved = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (GuessedCommit commit : guessed) {
+            if (fileSplits.containsKey(commit.sha())) {
+                resolved.add(commit);
+                rows.add(new Object[]{commit.id(), commit.areaGuess()});
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            int[] cleared = jdbcTemplate.batchUpdate(CLEAR_GUESS_SQL, rows);
+            Map<LocalDate, DailyActivitySeries.Day> deltas = new TreeMap<>();
+            for (int i = 0; i < cleared.length; i++) {
+                if (cleared[i] == 0) {
+                    continue;
+                }
+                GuessedCommit commit = resolved.get(i);
+                CommitDetailService.FileSplit split = fileSplits.get(commit.sha());
+                DailyActivitySeries.Day day = new DailyActivitySeries.Day(commit.date(), 0, 0, 0,
+                        split.backend() - (commit.areaGuess() == CommitClassifier.AREA_BACKEND ? 1 : 0),
+                        split.frontend() - (commit.areaGuess() == CommitClassifier.AREA_FRONTEND ? 1 : 0),
+                        split.other() - (commit.areaGuess() == CommitClassifier.AREA_OTHER ? 1 : 0));
+                deltas.merge(day.date(), day, ContributionIngestionService::add);
+            }
+            rollupService.increment(user.getId(), deltas.values());
+        });
+    }
+
+    private static DailyActivitySeries.Day add(DailyActivitySeries.Day a, DailyActivitySeries.Day b) {
+        return new DailyActivitySeries.Day(a.date(), a.totalCommits() + b.totalCommits(),
+                a.featureCommits() + b.featureCommits(), a.fixCommits() + b.fixCommits(),
+                a.backendFiles() + b.backendFiles(), a.frontendFiles() + b.frontendFiles(), a.otherFiles() + b.otherFiles());
+    }
+
+    private record GuessedCommit(long id, String sha, String url, int areaGuess, LocalDate date) {
+    }
+}
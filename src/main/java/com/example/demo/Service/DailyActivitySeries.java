@@ -0,0 +1,65 @@
+package com.example.demo.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 日ごとの集計値の系列。行のある日だけを持ち、期間内の合計はその行を足して返す
+ * （集計する期間の日数分の配列は作らない）。行が無い日は0として扱う。
+ */
+public final class DailyActivitySeries {
+
+    public record Day(LocalDate date, long totalCommits, long featureCommits, long fixCommits,
+                      long backendFiles, long frontendFiles, long otherFiles) {
+    }
+
+    public record Totals(long totalCommits, long featureCommits, long fixCommits,
+                         long backendFiles, long frontendFiles, long otherFiles) {
+
+        public static final Totals EMPTY = new Totals(0, 0, 0, 0, 0, 0);
+
+        public Totals plus(Totals other) {
+            return new Totals(totalCommits + other.totalCommits, featureCommits + other.featureCommits,
+                    fixCommits + other.fixCommits, backendFiles + other.backendFiles,
+                    frontendFiles + other.frontendFiles, otherFiles + other.otherFiles);
+        }
+    }
+
+    private final LocalDate start;
+    private final LocalDate end;
+    private final List<Day> rows;
+
+    private DailyActivitySeries(LocalDate start, LocalDate end, List<Day> rows) {
+        this.start = start;
+        this.end = end;
+        this.rows = rows;
+    }
+
+    /**
+     * start から end（両端含む）までの系列を作る。範囲外の行は無視する。
+     */
+    public static DailyActivitySeries of(LocalDate start, LocalDate end, List<Day> rows) {
+        return new DailyActivitySeries(start, end, rows);
+    }
+
+    /**
+     * from から to（両端含む）までの合計。系列の範囲外は切り詰める。
+     */
+    public Totals sum(LocalDate from, LocalDate to) {
+        LocalDate first = from.isBefore(start) ? start : from;
+        LocalDate last = to.isAfter(end) ? end : to;
+        long total = 0, feature = 0, fix = 0, backend = 0, frontend = 0, other = 0;
+        for (Day row : rows) {
+            if (row.date().isBefore(first) || row.date().isAfter(last)) {
+                continue;
+            }
+            total += row.totalCommits();
+            feature += row.featureCommits();
+            fix += row.fixCommits();
+            backend += row.backendFiles();
+            frontend += row.frontendFiles();
+            other += row.otherFiles();
+        }
+        return new Totals(total, feature, fix, backend, frontend, other);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JDBC / JPA のブロッキング呼び出しを実行する専用スケジューラー。
+ * 共有の Schedulers.boundedElastic() ではなく、スレッド数をコネクションプールに合わせた専用のプールで実行し、
+ * イベントループのスレッドやWebClientの処理を待たせないようにする。
+ * 待ち時間・実行時間・実行中／待機中の件数をメトリクスとして出す。
+ */
+@Component
+public class DatabaseScheduler {
+
+    private final Scheduler scheduler;
+    private final Timer waitTimer;
+    private final Timer executionTimer;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+
+    public DatabaseScheduler(
+            @Value("${db.scheduler.thread-cap:${spring.datasource.hikari.maximum-pool-size:10}}") int threadCap,
+            @Value("${db.scheduler.queued-task-cap:1000}") int queuedTaskCap,
+            MeterRegistry meterRegistry
+    ) {
+        this.scheduler = Schedulers.newBoundedElastic(threadCap, queuedTaskCap, "db", 60, true);
+        this.waitTimer = Timer.builder("db.scheduler.wait").register(meterRegistry);
+        this.executionTimer = Timer.builder("db.scheduler.execution").register(meterRegistry);
+        Gauge.builder("db.scheduler.pending", pending, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("db.scheduler.active", active, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /**
+     * ブロッキングの呼び出しを専用スケジューラーで実行する。null を返した場合は空になる。
+     * 待機中の件数が queued-task-cap を超えると RejectedExecutionException でエラーになる。
+     */
+    public <T> Mono<T> call(Callable<T> callable) {
+        return Mono.defer(() -> {
+            long submittedAt = System.nanoTime();
+            AtomicBoolean started = new AtomicBoolean();
+            pending.incrementAndGet();
+            return Mono.fromCallable(() -> {
+                        started.set(true);
+                        pending.decrementAndGet();
+                        long startedAt = System.nanoTime();
+                        waitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+                        active.incrementAndGet();
+                        try {
+                            return callable.call();
+                        } finally {
+                            active.decrementAndGet();
+                            executionTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                        }
+                    })
+                    .subscribeOn(scheduler)
+                    .doFinally(signal -> {
+                        // 実行前にキャンセル・拒否された場合
+                        if (started.compareAndSet(false, true)) {
+                            pending.decrementAndGet();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * 戻り値の無いブロッキングの呼び出しを専用スケジューラーで実行する。
+     */
+    public Mono<Void> run(Runnable runnable) {
+        return call(() -> {
+            runnable.run();
+            return null;
+        }).then();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+    }
+}
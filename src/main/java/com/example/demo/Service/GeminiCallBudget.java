@@ -0,0 +1,63 @@
+package com.example.demo.Service;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Geminiを実際に呼んでよい回数の上限。Reactorのコンテキストに載せた処理の中でだけ数える。
+ * キャッシュに当たった呼び出しや、他のリクエストが始めた実行中の呼び出しへの合流は数えない。
+ * 使い切った後の呼び出しは Gemini に送らずエラーにする。
+ * 他のリクエストと共有する呼び出しは、作る前に予算を確認する。作った後に確認すると、
+ * 先に購読した側（予算を使い切ったウォーマーなど）のコンテキストで判定され、合流したリクエストまで失敗するため。
+ */
+public final class GeminiCallBudget {
+
+    private final AtomicInteger remaining;
+
+    public GeminiCallBudget(int permits) {
+        this.remaining = new AtomicInteger(permits);
+    }
+
+    /**
+     * このバジェットを載せたコンテキスト。購読する側で contextWrite に渡す。
+     */
+    public Context context() {
+        return Context.of(GeminiCallBudget.class, this);
+    }
+
+    public static Optional<GeminiCallBudget> from(ContextView context) {
+        return context.getOrEmpty(GeminiCallBudget.class);
+    }
+
+    /**
+     * key の実行中の呼び出しがあれば合流し（予算は使わない）、無ければ予算を1回分取ってから start で作って共有する。
+     * 予算が無ければ共有のエントリを作らずにエラーを返す。
+     */
+    static <T> Mono<T> joinOrStart(Map<String, Mono<T>> inFlight, String key, Supplier<Mono<T>> start) {
+        return Mono.deferContextual(context -> {
+            Optional<GeminiCallBudget> budget = from(context);
+            // computeIfAbsent は null を返すとエントリを作らない
+            Mono<T> shared = inFlight.computeIfAbsent(key, k -> budget.isEmpty() || budget.get().tryAcquire() ? start.get() : null);
+            return shared != null ? shared : Mono.error(exhausted());
+        });
+    }
+
+    static IllegalStateException exhausted() {
+        return new IllegalStateException("Gemini呼び出しの予算を使い切りました。");
+    }
+
+    public boolean tryAcquire() {
+        return remaining.getAndUpdate(value -> value > 0 ? value - 1 : 0) > 0;
+    }
+
+    public int remaining() {
+        return remaining.get();
+    }
+}
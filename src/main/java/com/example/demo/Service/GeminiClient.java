@@ -0,0 +1,242 @@
+package com.example.demo.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gemini APIの呼び出しをまとめるクライアント。
+ * 同じモデル・同じプロンプトへの応答は GeminiResponseCache から返し、
+ * 実行中の同一プロンプトは1回の呼び出しを共有する。
+ * 実際の呼び出しは GeminiConcurrencyLimiter で同時実行数を絞り、上限を超えた分は429で断る。
+ * 画面に少しずつ表示したい場合は、生成途中のテキストを流す stream を使う。
+ */
+@Component
+public class GeminiClient {
+
+    public static final String MODEL = "gemini-2.0-flash-light";
+
+    private static final ParameterizedTypeReference<ServerSentEvent<JsonNode>> SSE_TYPE = new ParameterizedTypeReference<>() {
+    };
+
+    private final WebClient webClient;
+    private final CircuitBreaker circuitBreaker;
+    private final GeminiConcurrencyLimiter limiter;
+    private final MeterRegistry meterRegistry;
+    private final GeminiResponseCache responseCache;
+    private final String apiKey;
+
+    // 実行中の呼び出し（キャッシュキー → 共有Mono）
+    private final Map<String, Mono<String>> inFlight = new ConcurrentHashMap<>();
+
+    public GeminiClient(
+            UpstreamClients upstreamClients,
+            GeminiConcurrencyLimiter limiter,
+            GeminiResponseCache responseCache,
+            MeterRegistry meterRegistry,
+            @Value("${gemini.api.key}") String apiKey
+    ) {
+        this.webClient = upstreamClients.builder("gemini")
+                .baseUrl("https://generativelanguage.googleapis.com")
+                .build();
+        this.circuitBreaker = upstreamClients.circuitBreaker("gemini");
+        this.limiter = limiter;
+        this.meterRegistry = meterRegistry;
+        this.responseCache = responseCache;
+        this.apiKey = apiKey;
+    }
+
+    // --- Gemini APIリクエスト用DTO ---
+    private static class GeminiRequest {
+        public final List<Content> contents;
+        public GeminiRequest(String text) {
+            this.contents = List.of(new Content(List.of(new Part(text))));
+        }
+    }
+    private static class Content {
+        public final List<Part> parts;
+        public Content(List<Part> parts) { this.parts = parts; }
+    }
+    private static class Part {
+        public final String text;
+        public Part(String text) { this.text = text; }
+    }
+
+    /**
+     * プロンプトを送り、応答テキストを返す。キャッシュにあればGeminiは呼ばない。
+     */
+    public Mono<String> generate(String prompt) {
+        String key = GeminiResponseCache.key(MODEL, prompt);
+        return responseCache.get(key)
+                .switchIfEmpty(GeminiCallBudget.joinOrStart(inFlight, key, () -> limiter.limit(circuitBreaker.protect(call(prompt)))
+                        .doOnNext(text -> responseCache.put(key, MODEL, text))
+                        .doFinally(signal -> inFlight.remove(key))
+                        .cache()));
+    }
+
+    /**
+     * キャッシュを読まず、応答もキャッシュしない。
+     * ユーザーのトークンで取得した（他のユーザーには見えない可能性がある）内容を送る場合に使う。
+     */
+    public Mono<String> generateUncached(String prompt) {
+        return withinBudget(limiter.limit(circuitBreaker.protect(call(prompt))));
+    }
+
+    /**
+     * :streamGenerateContent でプロンプトを送り、生成されたテキストを届いた順に流す。
+     * キャッシュにあれば全文を1チャンクで返し、最後まで受信できた場合だけ全文をキャッシュする。
+     */
+    public Flux<String> stream(String prompt) {
+        String key = GeminiResponseCache.key(MODEL, prompt);
+        return responseCache.get(key)
+                .flux()
+                .switchIfEmpty(streamFromGemini(prompt, key));
+    }
+
+    /**
+     * stream のキャッシュを使わない版（generateUncached と同じ用途）。
+     */
+    public Flux<String> streamUncached(String prompt) {
+        return streamFromGemini(prompt, null);
+    }
+
+    // key が null なら応答をキャッシュしない
+    private Flux<String> streamFromGemini(String prompt, String key) {
+        return withinBudget(limiter.limit(circuitBreaker.protect(Flux.defer(() -> {
+            StringBuilder fullText = new StringBuilder();
+            return timed("stream", webClient.post()
+                    .uri("/v1beta/models/" + MODEL + ":streamGenerateContent?alt=sse")
+                    .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .header("x-goog-api-key", this.apiKey.trim())
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .bodyValue(new GeminiRequest(prompt))
+                    .retrieve()
+                    .onStatus(HttpStatusCode::isError, GeminiClient::toError)
+                    .bodyToFlux(SSE_TYPE)
+                    .mapNotNull(ServerSentEvent::data)
+                    .map(GeminiClient::extractText)
+                    .filter(text -> !text.isEmpty())
+                    .doOnNext(fullText::append)
+                    .doOnComplete(() -> {
+                        if (key != null && !fullText.isEmpty()) {
+                            responseCache.put(key, MODEL, fullText.toString());
+                        }
+                    })
+                    .doOnError(error -> System.err.println("Gemini APIのストリーミング中にエラー発生: " + error.getMessage())));
+        }))));
+    }
+
+    /**
+     * コンテキストに GeminiCallBudget があれば、呼び出す前に1回分を取る。使い切っていたらGeminiに送らずエラーにする。
+     */
+    private <T> Mono<T> withinBudget(Mono<T> source) {
+        return Mono.deferContextual(context -> {
+            Optional<GeminiCallBudget> budget = GeminiCallBudget.from(context);
+            return budget.isEmpty() || budget.get().tryAcquire() ? source : Mono.error(GeminiCallBudget.exhausted());
+        });
+    }
+
+    private <T> Flux<T> withinBudget(Flux<T> source) {
+        return Flux.deferContextual(context -> {
+            Optional<GeminiCallBudget> budget = GeminiCallBudget.from(context);
+            return budget.isEmpty() || budget.get().tryAcquire() ? source : Flux.error(GeminiCallBudget.exhausted());
+        });
+    }
+
+    // ストリームの各イベントは候補の一部分だけを含む（parts が複数に分かれることもある）
+    private static String extractText(JsonNode chunk) {
+        StringBuilder text = new StringBuilder();
+        chunk.path("candidates").path(0).path("content").path("parts")
+                .forEach(part -> text.append(part.path("text").asText("")));
+        return text.toString();
+    }
+
+    private static Mono<? extends Throwable> toError(ClientResponse clientResponse) {
+        return clientResponse.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .flatMap(errorBody -> {
+                    System.err.println("Gemini API Error Status: " + clientResponse.statusCode());
+                    System.err.println("Gemini API Error Body: " + errorBody);
+                    // ステータスを残しておき、サーキットブレーカーで5xx / 429だけを失敗として数える
+                    return Mono.error(WebClientResponseException.create(clientResponse.statusCode(),
+                            "Gemini APIがエラーを返しました。詳細はコンソールログを確認してください。",
+                            clientResponse.headers().asHttpHeaders(), null, null, null));
+                });
+    }
+
+    private Mono<String> call(String prompt) {
+        GeminiRequest requestBody = new GeminiRequest(prompt);
+
+        return timed("generate", webClient.post()
+                .uri("/v1beta/models/" + MODEL + ":generateContent")
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .header("x-goog-api-key", this.apiKey.trim()) // 認証エラーを解決したヘッダー方式
+                .bodyValue(requestBody)
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, GeminiClient::toError)
+                .bodyToMono(JsonNode.class)
+                .map(response -> {
+                    JsonNode textNode = response.path("candidates").path(0).path("content").path("parts").path(0).path("text");
+                    if (textNode.isMissingNode() || textNode.isNull()) {
+                        String errorMessage = "Geminiからの応答形式が不正です: " + response.toString();
+                        System.err.println(errorMessage);
+                        // 不正な応答はキャッシュしない
+                        throw new IllegalStateException(errorMessage);
+                    }
+                    return textNode.asText();
+                })
+                .doOnError(error -> System.err.println("Gemini API呼び出し中にエラー発生: " + error.getMessage())));
+    }
+
+    /**
+     * gemini.requests にモデル・呼び出し方法・ステータスごとの所要時間を記録する。
+     * ストリーミングは最後のチャンクを受け取るまでの時間になる。
+     */
+    private <T> Mono<T> timed(String operation, Mono<T> source) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String[] status = {"CANCELLED"};
+            return source
+                    .doOnSuccess(value -> status[0] = "200")
+                    .doOnError(error -> status[0] = status(error))
+                    .doFinally(signal -> sample.stop(meterRegistry.timer("gemini.requests",
+                            "model", MODEL, "operation", operation, "status", status[0])));
+        });
+    }
+
+    private <T> Flux<T> timed(String operation, Flux<T> source) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String[] status = {"CANCELLED"};
+            return source
+                    .doOnComplete(() -> status[0] = "200")
+                    .doOnError(error -> status[0] = status(error))
+                    .doFinally(signal -> sample.stop(meterRegistry.timer("gemini.requests",
+                            "model", MODEL, "operation", operation, "status", status[0])));
+        });
+    }
+
+    private static String status(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return String.valueOf(response.getStatusCode().value());
+        }
+        return error instanceof IllegalStateException ? "INVALID_RESPONSE" : "IO_ERROR";
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.demo.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Gemini呼び出しの同時実行数をAIMDで調整するリミッター。
+ * 応答が latency-threshold 以内に返れば上限を少しずつ上げ（+1/上限）、
+ * 遅い応答や過負荷のエラー（429 / 5xx / タイムアウト）があれば backoff-ratio を掛けて下げる。
+ * 上限に達したら最大 max-queue 件まで max-wait の間だけ待たせ、それを超える分は
+ * GeminiOverloadedException（429 + Retry-After）ですぐに断る。
+ */
+@Component
+public class GeminiConcurrencyLimiter {
+
+    private enum Outcome {
+        SUCCESS, OVERLOAD, IGNORE
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final int maxQueue;
+    private final Duration maxWait;
+    private final Predicate<Throwable> isOverload;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private final LongAdder rejected = new LongAdder();
+    private double limit;
+    private int inFlight;
+    // 応答時間の指数移動平均（Retry-After の目安に使う）
+    private double averageLatencyNanos;
+
+    @Autowired
+    public GeminiConcurrencyLimiter(
+            @Value("${gemini.limiter.initial-limit:8}") int initialLimit,
+            @Value("${gemini.limiter.min-limit:1}") int minLimit,
+            @Value("${gemini.limiter.max-limit:32}") int maxLimit,
+            @Value("${gemini.limiter.latency-threshold:15s}") Duration latencyThreshold,
+            @Value("${gemini.limiter.backoff-ratio:0.7}") double backoffRatio,
+            @Value("${gemini.limiter.max-queue:16}") int maxQueue,
+            @Value("${gemini.limiter.max-wait:2s}") Duration maxWait,
+            MeterRegistry meterRegistry
+    ) {
+        this(initialLimit, minLimit, maxLimit, latencyThreshold, backoffRatio, maxQueue, maxWait,
+                error -> UpstreamClients.isTransient(error) || UpstreamClients.isRateLimited(error));
+        Gauge.builder("gemini.limiter.limit", this, GeminiConcurrencyLimiter::getLimit).register(meterRegistry);
+        Gauge.builder("gemini.limiter.in-flight", this, GeminiConcurrencyLimiter::getInFlight).register(meterRegistry);
+        Gauge.builder("gemini.limiter.queued", this, GeminiConcurrencyLimiter::getQueued).register(meterRegistry);
+        FunctionCounter.builder("gemini.limiter.rejected", rejected, LongAdder::sum).register(meterRegistry);
+    }
+
+    GeminiConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold, double backoffRatio,
+                             int maxQueue, Duration maxWait, Predicate<Throwable> isOverload) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.maxQueue = maxQueue;
+        this.maxWait = maxWait;
+        this.isOverload = isOverload;
+        this.averageLatencyNanos = latencyThreshold.toNanos() / 2.0;
+    }
+
+    /**
+     * 枠が空くのを待ってから source を実行する。待てない場合は GeminiOverloadedException。
+     */
+    public <T> Mono<T> limit(Mono<T> source) {
+        return acquire().flatMap(startedAt -> source
+                .doOnSuccess(value -> release(startedAt, Outcome.SUCCESS))
+                .doOnError(error -> release(startedAt, isOverload.test(error) ? Outcome.OVERLOAD : Outcome.IGNORE))
+                .doOnCancel(() -> release(startedAt, Outcome.IGNORE)));
+    }
+
+    /**
+     * ストリーミング用。枠は最後まで保持し、応答時間は最初のチャンクまでで判定する。
+     */
+    public <T> Flux<T> limit(Flux<T> source) {
+        return acquire().flatMapMany(startedAt -> {
+            long[] firstChunkAt = {0};
+            return source
+                    .doOnNext(value -> {
+                        if (firstChunkAt[0] == 0) {
+                            firstChunkAt[0] = System.nanoTime();
+                        }
+                    })
+                    .doOnComplete(() -> release(startedAt, firstChunkAt[0], Outcome.SUCCESS))
+                    .doOnError(error -> release(startedAt, isOverload.test(error) ? Outcome.OVERLOAD : Outcome.IGNORE))
+                    .doOnCancel(() -> release(startedAt, Outcome.IGNORE));
+        });
+    }
+
+    /**
+     * 枠を1つ確保し、確保した時刻（System.nanoTime）を返す。
+     * sink への通知はロックの外で行う（下流の購読やそこでの同期処理を、ロックを持ったまま実行しないため）。
+     */
+    Mono<Long> acquire() {
+        return Mono.create(sink -> {
+            Waiter waiter = null;
+            boolean granted = false;
+            Duration retryAfter = null;
+            synchronized (this) {
+                if (inFlight < Math.floor(limit)) {
+                    inFlight++;
+                    granted = true;
+                } else if (waiters.size() >= maxQueue) {
+                    retryAfter = retryAfter();
+                } else {
+                    waiter = new Waiter(sink);
+                    waiters.addLast(waiter);
+                }
+            }
+            if (granted) {
+                sink.success(System.nanoTime());
+                return;
+            }
+            if (retryAfter != null) {
+                rejected.increment();
+                sink.error(new GeminiOverloadedException(retryAfter));
+                return;
+            }
+            Waiter queued = waiter;
+            sink.onCancel(() -> abandon(queued, false));
+            Schedulers.parallel().schedule(() -> abandon(queued, true), maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        });
+    }
+
+    private void release(long startedAt, Outcome outcome) {
+        release(startedAt, 0, outcome);
+    }
+
+    private void release(long startedAt, long respondedAt, Outcome outcome) {
+        List<Waiter> granted;
+        synchronized (this) {
+            long latency = (respondedAt != 0 ? respondedAt : System.nanoTime()) - startedAt;
+            inFlight--;
+            if (outcome == Outcome.SUCCESS) {
+                averageLatencyNanos = averageLatencyNanos * 0.8 + latency * 0.2;
+            }
+            if (outcome == Outcome.OVERLOAD || (outcome == Outcome.SUCCESS && latency > latencyThresholdNanos)) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (outcome == Outcome.SUCCESS) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            granted = grantWaiters();
+        }
+        notifyGranted(granted);
+    }
+
+    // ロックを持って呼ぶ。枠を渡した待機者を返すので、ロックを出てから notifyGranted で通知する
+    private List<Waiter> grantWaiters() {
+        List<Waiter> granted = new ArrayList<>();
+        while (inFlight < Math.floor(limit) && !waiters.isEmpty()) {
+            Waiter waiter = waiters.pollFirst();
+            if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.GRANTED)) {
+                inFlight++;
+                granted.add(waiter);
+            }
+        }
+        return granted;
+    }
+
+    private static void notifyGranted(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            waiter.sink.success(System.nanoTime());
+        }
+    }
+
+    /**
+     * 待機をやめる。expired なら待ち時間切れとして429で断る。
+     * 枠を渡した直後にキャンセルされた場合は、その枠を返す。
+     */
+    private void abandon(Waiter waiter, boolean expired) {
+        if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.ABANDONED)) {
+            Duration retryAfter;
+            synchronized (this) {
+                waiters.remove(waiter);
+                retryAfter = retryAfter();
+            }
+            if (expired) {
+                rejected.increment();
+                waiter.sink.error(new GeminiOverloadedException(retryAfter));
+            }
+        } else if (!expired && waiter.state.compareAndSet(Waiter.GRANTED, Waiter.ABANDONED)) {
+            List<Waiter> granted;
+            synchronized (this) {
+                inFlight--;
+                granted = grantWaiters();
+            }
+            notifyGranted(granted);
+        }
+    }
+
+    // 待っている分が捌けるまでのおおよその時間
+    private Duration retryAfter() {
+        double rounds = (waiters.size() + 1) / Math.max(1, Math.floor(limit));
+        return Duration.ofNanos((long) (averageLatencyNanos * Math.max(1, rounds)));
+    }
+
+    synchronized double getLimit() {
+        return limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    private static final class Waiter {
+        static final int WAITING = 0;
+        static final int GRANTED = 1;
+        static final int ABANDONED = 2;
+
+        final MonoSink<Long> sink;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Waiter(MonoSink<Long> sink) {
+            this.sink = sink;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.demo.Service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+/**
+ * Geminiの同時実行数の上限に達し、リクエストを受け付けなかったことを表す。
+ * 429 Too Many Requests と、再試行までの目安を Retry-After ヘッダーで返す。
+ */
+public class GeminiOverloadedException extends ResponseStatusException {
+
+    private final Duration retryAfter;
+
+    public GeminiOverloadedException(Duration retryAfter) {
+        super(HttpStatus.TOO_MANY_REQUESTS, "分析が混み合っています。しばらくしてから再試行してください。");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())));
+        return headers;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.demo.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Geminiの応答をプロンプトの内容で引けるキャッシュ。
+ * キーはモデルIDとプロンプト全文のSHA-256なので、フォークやミラー、内容の変わらない再分析など
+ * リポジトリ名が違っても同じコミットの集合であれば同じ応答を再利用できる。
+ * メモリ上（件数上限付きLRU）を先に見て、無ければ gemini_response_caches テーブルを参照する。
+ */
+@Component
+public class GeminiResponseCache {
+
+    private static final String SELECT_SQL =
+            "SELECT response_text, expires_at FROM gemini_response_caches WHERE prompt_hash = ? AND expires_at > NOW()";
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO gemini_response_caches (prompt_hash, model, response_text, created_at, expires_at) " +
+            "VALUES (?, ?, ?, NOW(), NOW() + ? * INTERVAL '1 second') " +
+            "ON CONFLICT (prompt_hash) DO UPDATE " +
+            "SET model = EXCLUDED.model, response_text = EXCLUDED.response_text, " +
+            "created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at";
+
+    private static final String PURGE_SQL = "DELETE FROM gemini_response_caches WHERE expires_at < NOW()";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseScheduler databaseScheduler;
+    private final Duration ttl;
+    private final Duration purgeInterval;
+    private final Map<String, Entry> entries;
+    private final AtomicReference<Instant> lastPurgedAt = new AtomicReference<>(Instant.now());
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder databaseHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private record Entry(String text, Instant expiresAt) {
+    }
+
+    public GeminiResponseCache(
+            JdbcTemplate jdbcTemplate,
+            DatabaseScheduler databaseScheduler,
+            @Value("${gemini.cache.max-size:1000}") int maxSize,
+            @Value("${gemini.cache.ttl:24h}") Duration ttl,
+            @Value("${gemini.cache.purge-interval:1h}") Duration purgeInterval,
+            MeterRegistry meterRegistry
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseScheduler = databaseScheduler;
+        this.ttl = ttl;
+        this.purgeInterval = purgeInterval;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        });
+
+        FunctionCounter.builder("gemini.cache.hits", memoryHits, LongAdder::sum).tag("level", "memory").register(meterRegistry);
+        FunctionCounter.builder("gemini.cache.hits", databaseHits, LongAdder::sum).tag("level", "database").register(meterRegistry);
+        FunctionCounter.builder("gemini.cache.misses", misses, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("gemini.cache.size", entries, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * モデルIDとプロンプトからキャッシュキーを作る。
+     */
+    public static String key(String model, String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(prompt.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 有効な応答があれば返す（メモリ → DB）。無ければ空。DBエラー時も空を返し、Geminiを呼ぶ側に倒す。
+     */
+    public Mono<String> get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt().isAfter(Instant.now())) {
+            memoryHits.increment();
+            return Mono.just(entry.text());
+        }
+        if (entry != null) {
+            entries.remove(key, entry);
+        }
+        return databaseScheduler.call(() -> {
+                    List<Entry> rows = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new Entry(
+                            rs.getString("response_text"), rs.getTimestamp("expires_at").toInstant()), key);
+                    return rows.isEmpty() ? null : rows.get(0);
+                })
+                .onErrorResume(error -> {
+                    System.err.println("Geminiキャッシュの読み込みに失敗しました: " + error.getMessage());
+                    return Mono.empty();
+                })
+                .doOnNext(row -> {
+                    databaseHits.increment();
+                    entries.put(key, row);
+                })
+                .map(Entry::text)
+                .switchIfEmpty(Mono.fromRunnable(misses::increment));
+    }
+
+    /**
+     * 応答を保存する。DBへの書き込みは呼び出し元を待たせない。
+     */
+    public void put(String key, String model, String text) {
+        entries.put(key, new Entry(text, Instant.now().plus(ttl)));
+        databaseScheduler.run(() -> {
+                    jdbcTemplate.update(UPSERT_SQL, key, model, text, ttl.toSeconds());
+                    purgeExpiredIfDue();
+                })
+                .subscribe(null, error -> System.err.println("Geminiキャッシュの保存に失敗しました: " + error.getMessage()));
+    }
+
+    // 期限切れの行は読まれないだけなので、一定間隔ごとに書き込みのついでに消す
+    private void purgeExpiredIfDue() {
+        Instant last = lastPurgedAt.get();
+        Instant now = Instant.now();
+        if (last.plus(purgeInterval).isBefore(now) && lastPurgedAt.compareAndSet(last, now)) {
+            jdbcTemplate.update(PURGE_SQL);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.example.demo.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import org.springframework.web.util.UriBuilder;
+import org.springframework.web.util.UriBuilderFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.retry.RetryBackoffSpec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * GitHub REST APIへのGETをまとめるクライアント。
+ * 前回のレスポンスの ETag / Last-Modified を付けた条件付きリクエストを送り、
+ * 304 Not Modified（レート制限にカウントされない）の場合は保存済みのボディを返す。
+ * 送信前に GitHubRateLimiter でトークンごとの残量を確認し、レスポンスヘッダーで残量を更新する。
+ * 接続エラー・タイムアウト・5xxはバックオフを挟んでやり直す（ストリーミングは途中から再開できないのでやり直さない）。
+ */
+@Component
+public class GitHubApiClient {
+
+    private static final String BASE_URL = "https://api.github.com";
+    // Link: <https://api.github.com/...&page=5>; rel="last"
+    private static final Pattern LAST_PAGE_PATTERN = Pattern.compile("[?&]page=(\\d+)[^>]*>;\\s*rel=\"last\"");
+
+    public record JsonPage(JsonNode body, int lastPage) {
+    }
+
+    private final WebClient webClient;
+    private final RetryBackoffSpec retry;
+    private final UriBuilderFactory uriBuilderFactory = new DefaultUriBuilderFactory(BASE_URL);
+    private final GitHubResponseStore responseStore;
+    private final GitHubRateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final String sharedToken;
+
+    public GitHubApiClient(
+            UpstreamClients upstreamClients,
+            GitHubResponseStore responseStore,
+            GitHubRateLimiter rateLimiter,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${github.api.token}") String sharedToken
+    ) {
+        this.webClient = upstreamClients.builder("github")
+                .baseUrl(BASE_URL)
+                .defaultHeader(HttpHeaders.ACCEPT, "application/vnd.github.v3+json")
+                .build();
+        this.retry = upstreamClients.retry("github");
+        this.responseStore = responseStore;
+        this.rateLimiter = rateLimiter;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.sharedToken = sharedToken;
+    }
+
+    /**
+     * GETしてJSONとして返す。token が null の場合は共有トークン（github.api.token）を使う。
+     */
+    public Mono<JsonNode> getJson(Function<UriBuilder, URI> uriFunction, String token) {
+        return get(uriFunction, token).map(this::readTree);
+    }
+
+    /**
+     * 共有トークンでGETする。共有トークンの残りが少ない場合は、余裕があればユーザーのトークンに切り替える。
+     */
+    public Mono<JsonNode> getJsonPreferringShared(Function<UriBuilder, URI> uriFunction, String userToken) {
+        return getJson(uriFunction, chooseToken(userToken));
+    }
+
+    /**
+     * 共有トークンを使うならnull、ユーザーのトークンに切り替えるならそのトークンを返す。
+     * 複数ページをまとめて取得するときに、最初に一度だけ決めるために使う。
+     */
+    public String chooseToken(String userToken) {
+        boolean useUserToken = userToken != null
+                && rateLimiter.isLow(credentialKey(sharedToken))
+                && !rateLimiter.isLow(credentialKey(userToken));
+        return useUserToken ? userToken : null;
+    }
+
+    /**
+     * GETしてJSONと、Linkヘッダーから読み取った最終ページ番号を返す。
+     * ページが1つしかない（Linkヘッダーが無い）場合、最終ページは1。
+     */
+    public Mono<JsonPage> getJsonPage(Function<UriBuilder, URI> uriFunction, String token) {
+        return exchange(uriFunction, token)
+                .map(response -> new JsonPage(readTree(response.body()), lastPage(response.link())));
+    }
+
+    /**
+     * GETして生のボディを返す。
+     */
+    public Mono<byte[]> get(Function<UriBuilder, URI> uriFunction, String token) {
+        return exchange(uriFunction, token).map(GitHubResponseStore.StoredResponse::body);
+    }
+
+    private Mono<GitHubResponseStore.StoredResponse> exchange(Function<UriBuilder, URI> uriFunction, String token) {
+        String credential = token != null ? token : sharedToken;
+        String credentialKey = credentialKey(credential);
+        URI uri = uriFunction.apply(uriBuilderFactory.builder());
+        String key = storeKey(uri, credential);
+
+        // 再試行も枠を取り直す（再試行は403 / 429 / 5xxの直後が多く、予約なしで送るとさらに制限に近づくため）
+        return rateLimiter.acquire(credentialKey).then(Mono.defer(() -> {
+            GitHubResponseStore.StoredResponse stored = responseStore.get(key);
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String[] status = {null};
+            return webClient.get()
+                    .uri(uri)
+                    .headers(headers -> setConditionalHeaders(headers, credential, stored))
+                    .exchangeToMono(response -> {
+                        status[0] = String.valueOf(response.statusCode().value());
+                        rateLimiter.update(credentialKey, response.headers().asHttpHeaders());
+                        if (response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED) && stored != null) {
+                            return response.releaseBody().thenReturn(stored);
+                        }
+                        if (response.statusCode().isError()) {
+                            return response.createError();
+                        }
+                        HttpHeaders headers = response.headers().asHttpHeaders();
+                        String etag = headers.getETag();
+                        String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+                        String link = headers.getFirst(HttpHeaders.LINK);
+                        return response.bodyToMono(byte[].class)
+                                .defaultIfEmpty(new byte[0])
+                                .map(body -> {
+                                    responseStore.put(key, etag, lastModified, link, body);
+                                    return new GitHubResponseStore.StoredResponse(etag, lastModified, link, body);
+                                });
+                    })
+                    .doFinally(signal -> recordRequest(sample, uri, status[0], signal));
+        })).retryWhen(retry);
+    }
+
+    /**
+     * GETしてボディを受信したチャンクのまま流す（全体をメモリに載せずに解析したい場合用）。
+     * 最後まで読み切った場合だけ、条件付きリクエスト用にボディを保存する。
+     */
+    public Flux<byte[]> stream(Function<UriBuilder, URI> uriFunction, String token) {
+        String credential = token != null ? token : sharedToken;
+        String credentialKey = credentialKey(credential);
+        URI uri = uriFunction.apply(uriBuilderFactory.builder());
+        String key = storeKey(uri, credential);
+
+        return rateLimiter.acquire(credentialKey).thenMany(Flux.defer(() -> {
+            GitHubResponseStore.StoredResponse stored = responseStore.get(key);
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String[] status = {null};
+            return webClient.get()
+                    .uri(uri)
+                    .headers(headers -> setConditionalHeaders(headers, credential, stored))
+                    .exchangeToFlux(response -> {
+                        status[0] = String.valueOf(response.statusCode().value());
+                        rateLimiter.update(credentialKey, response.headers().asHttpHeaders());
+                        if (response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED) && stored != null) {
+                            return response.releaseBody().thenMany(Flux.just(stored.body()));
+                        }
+                        if (response.statusCode().isError()) {
+                            return response.<byte[]>createError().flux();
+                        }
+                        HttpHeaders headers = response.headers().asHttpHeaders();
+                        String etag = headers.getETag();
+                        String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+                        Flux<byte[]> chunks = response.bodyToFlux(DataBuffer.class).map(GitHubApiClient::toBytes);
+                        if (etag == null && lastModified == null) {
+                            return chunks;
+                        }
+                        BodyCopy copy = new BodyCopy(responseStore.getMaxEntryBytes());
+                        return chunks
+                                .doOnNext(copy::append)
+                                .doOnComplete(() -> copy.storeTo(responseStore, key, etag, lastModified,
+                                        headers.getFirst(HttpHeaders.LINK)));
+                    })
+                    .doFinally(signal -> recordRequest(sample, uri, status[0], signal));
+        }));
+    }
+
+    /**
+     * github.requests にエンドポイントとステータスごとの所要時間を記録する。
+     * 応答を受け取れなかった場合のステータスは IO_ERROR（キャンセルは CANCELLED）。
+     */
+    private void recordRequest(Timer.Sample sample, URI uri, String status, SignalType signal) {
+        if (status == null) {
+            status = signal == SignalType.CANCEL ? "CANCELLED" : "IO_ERROR";
+        }
+        sample.stop(meterRegistry.timer("github.requests", "endpoint", endpoint(uri), "status", status));
+    }
+
+    /**
+     * タグの種類が増えすぎないよう、パスのオーナー名・リポジトリ名・ユーザー名・SHAなどを置き換える。
+     * 例: /repos/octo/app/commits/abc123 → /repos/{owner}/{repo}/commits/{id}
+     */
+    static String endpoint(URI uri) {
+        String[] segments = uri.getPath().split("/");
+        StringBuilder endpoint = new StringBuilder();
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            if (i == 2 && ("repos".equals(segments[1]) || "users".equals(segments[1]))) {
+                segment = "repos".equals(segments[1]) ? "{owner}" : "{username}";
+            } else if (i == 3 && "repos".equals(segments[1])) {
+                segment = "{repo}";
+            } else if (i > 3 && segment.matches("[0-9a-fA-F]{7,40}|\\d+")) {
+                segment = "{id}";
+            }
+            endpoint.append('/').append(segment);
+        }
+        return endpoint.toString();
+    }
+
+    private static void setConditionalHeaders(HttpHeaders headers, String credential, GitHubResponseStore.StoredResponse stored) {
+        headers.setBearerAuth(credential);
+        if (stored != null && stored.etag() != null) {
+            headers.set(HttpHeaders.IF_NONE_MATCH, stored.etag());
+        }
+        if (stored != null && stored.lastModified() != null) {
+            headers.set(HttpHeaders.IF_MODIFIED_SINCE, stored.lastModified());
+        }
+    }
+
+    private static byte[] toBytes(DataBuffer buffer) {
+        try {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            return bytes;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    /**
+     * ストリーミング中のボディの写し。上限を超えたら保存を諦める。
+     */
+    private static final class BodyCopy {
+        private final long maxBytes;
+        private ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        BodyCopy(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        void append(byte[] chunk) {
+            if (out != null && out.size() + chunk.length <= maxBytes) {
+                out.write(chunk, 0, chunk.length);
+            } else {
+                out = null;
+            }
+        }
+
+        void storeTo(GitHubResponseStore store, String key, String etag, String lastModified, String link) {
+            if (out != null) {
+                store.put(key, etag, lastModified, link, out.toByteArray());
+            }
+        }
+    }
+
+    private static int lastPage(String link) {
+        if (link == null) {
+            return 1;
+        }
+        Matcher matcher = LAST_PAGE_PATTERN.matcher(link);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 1;
+    }
+
+    private JsonNode readTree(byte[] body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("GitHub APIのレスポンスの解析に失敗しました。", e);
+        }
+    }
+
+    /**
+     * レート制限のバケット名。共有トークンは "shared"、ユーザーのトークンはハッシュの先頭で識別する。
+     */
+    private String credentialKey(String credential) {
+        if (credential.equals(sharedToken)) {
+            return "shared";
+        }
+        return "user:" + DigestUtils.md5DigestAsHex(credential.getBytes(StandardCharsets.UTF_8)).substring(0, 12);
+    }
+
+    /**
+     * URLとトークンの組をキーにする。トークンそのものはメモリに残さずハッシュ化する。
+     */
+    private static String storeKey(URI uri, String credential) {
+        return DigestUtils.md5DigestAsHex(credential.getBytes(StandardCharsets.UTF_8)) + " " + uri;
+    }
+}
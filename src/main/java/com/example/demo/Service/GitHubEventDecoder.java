@@ -0,0 +1,195 @@
+package com.example.demo.Service;
+
+import com.example.demo.dto.GitHubEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * GitHubのイベント一覧（JSON配列）をストリームのままデコードする。
+ * Jacksonのノンブロッキングパーサーにチャンクを順に流し込み、
+ * id / type / repo.name / created_at / payload.commits[].{sha,message,url} だけを取り出す。
+ * それ以外（payloadの大部分やactorなど）はトークンを読み飛ばすだけでオブジェクト化しない。
+ * 下流がキャンセルすれば、残りのボディは読まずに終了する。
+ */
+@Component
+public class GitHubEventDecoder {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public Flux<GitHubEvent> decode(Flux<byte[]> chunks) {
+        return Flux.defer(() -> {
+            EventTokenizer tokenizer = new EventTokenizer(createParser());
+            return chunks.concatMapIterable(tokenizer::feed)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(tokenizer.endOfInput())));
+        });
+    }
+
+    private JsonParser createParser() {
+        try {
+            return jsonFactory.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * コンテナの深さと、各深さで直前に読んだフィールド名だけを追跡する状態機械。
+     * 深さ0がトップレベルの配列、1がイベント、2がpayload、3がcommits配列、4が各コミット。
+     */
+    private static final class EventTokenizer {
+
+        private static final int MAX_TRACKED_DEPTH = 8;
+
+        private final JsonParser parser;
+        private final String[] fields = new String[MAX_TRACKED_DEPTH];
+        private int depth;
+
+        private String id;
+        private String type;
+        private String repoName;
+        private String createdAt;
+        private List<GitHubEvent.Commit> commits;
+
+        private boolean inCommit;
+        private String sha;
+        private String message;
+        private String url;
+
+        EventTokenizer(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        List<GitHubEvent> feed(byte[] chunk) {
+            try {
+                ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(chunk, 0, chunk.length);
+                return drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException("GitHubイベントの解析に失敗しました。", e);
+            }
+        }
+
+        List<GitHubEvent> endOfInput() {
+            try {
+                ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).endOfInput();
+                return drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException("GitHubイベントの解析に失敗しました。", e);
+            } finally {
+                try {
+                    parser.close();
+                } catch (IOException ignored) {
+                    // 読み込み側のリソースは無いので閉じられなくても問題ない
+                }
+            }
+        }
+
+        private List<GitHubEvent> drain() throws IOException {
+            List<GitHubEvent> completed = null;
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                GitHubEvent event = handle(token);
+                if (event != null) {
+                    if (completed == null) {
+                        completed = new ArrayList<>();
+                    }
+                    completed.add(event);
+                }
+            }
+            return completed != null ? completed : Collections.emptyList();
+        }
+
+        private GitHubEvent handle(JsonToken token) throws IOException {
+            switch (token) {
+                case START_OBJECT, START_ARRAY -> {
+                    if (token == JsonToken.START_OBJECT) {
+                        if (depth == 1) {
+                            startEvent();
+                        } else if (depth == 4 && "payload".equals(fields[1]) && "commits".equals(fields[2])) {
+                            startCommit();
+                        }
+                    }
+                    if (depth < MAX_TRACKED_DEPTH) {
+                        fields[depth] = null;
+                    }
+                    depth++;
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    depth--;
+                    if (depth == 4 && inCommit) {
+                        commits.add(new GitHubEvent.Commit(sha != null ? sha : "", message, url));
+                        inCommit = false;
+                    } else if (depth == 1 && token == JsonToken.END_OBJECT) {
+                        return finishEvent();
+                    }
+                }
+                case FIELD_NAME -> {
+                    if (depth - 1 < MAX_TRACKED_DEPTH) {
+                        fields[depth - 1] = parser.currentName();
+                    }
+                }
+                case VALUE_STRING, VALUE_NUMBER_INT -> readValue();
+                default -> {
+                    // 真偽値・null・小数はどれも使わない
+                }
+            }
+            return null;
+        }
+
+        private void readValue() throws IOException {
+            if (depth == 2) {
+                switch (fields[1]) {
+                    case "id" -> id = parser.getText();
+                    case "type" -> type = parser.getText();
+                    case "created_at" -> createdAt = parser.getText();
+                    default -> {
+                    }
+                }
+            } else if (depth == 3 && "repo".equals(fields[1]) && "name".equals(fields[2])) {
+                repoName = parser.getText();
+            } else if (depth == 5 && inCommit) {
+                switch (fields[4]) {
+                    case "sha" -> sha = parser.getText();
+                    case "message" -> message = parser.getText();
+                    case "url" -> url = parser.getText();
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        private void startEvent() {
+            id = null;
+            type = null;
+            repoName = null;
+            createdAt = null;
+            commits = new ArrayList<>();
+        }
+
+        private void startCommit() {
+            inCommit = true;
+            sha = null;
+            message = null;
+            url = null;
+        }
+
+        private GitHubEvent finishEvent() {
+            if (id == null || createdAt == null) {
+                // 必須項目が無いイベントは保存できないので捨てる
+                return null;
+            }
+            return new GitHubEvent(id, type != null ? type : "", repoName != null ? repoName : "",
+                    OffsetDateTime.parse(createdAt), commits);
+        }
+    }
+}
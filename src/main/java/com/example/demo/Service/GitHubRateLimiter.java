@@ -0,0 +1,172 @@
+package com.example.demo.Service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GitHub APIのレート制限をトークン（クレデンシャル）ごとに管理する。
+ * レスポンスの X-RateLimit-Remaining / X-RateLimit-Reset で残量を更新し、
+ * 残りが少なくなったら403が返る前にリセットまで待たせるか、待てない場合は拒否する。
+ * 各バケットの状態は actuator の /actuator/githubratelimit で確認できる。
+ */
+@Component
+@Endpoint(id = "githubratelimit")
+public class GitHubRateLimiter {
+
+    private final int minRemaining;
+    private final int lowWatermark;
+    private final Duration maxWait;
+    private final int maxBuckets;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public GitHubRateLimiter(
+            @Value("${github.rate-limit.min-remaining:10}") int minRemaining,
+            @Value("${github.rate-limit.low-watermark:200}") int lowWatermark,
+            @Value("${github.rate-limit.max-wait:5s}") Duration maxWait,
+            @Value("${github.rate-limit.max-buckets:10000}") int maxBuckets
+    ) {
+        this.minRemaining = minRemaining;
+        this.lowWatermark = lowWatermark;
+        this.maxWait = maxWait;
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * リクエスト1回分の枠を確保する。
+     * 枠が無くリセットまで max-wait 以内なら待ってから確保し、それ以上なら429で拒否する。
+     */
+    public Mono<Void> acquire(String credentialKey) {
+        return Mono.defer(() -> {
+            Bucket bucket = buckets.get(credentialKey);
+            if (bucket == null) {
+                // まだヘッダーを見ていないクレデンシャルは制限しない
+                return Mono.empty();
+            }
+            Duration wait = bucket.tryReserve(Instant.now(), minRemaining);
+            if (wait.isZero()) {
+                return Mono.empty();
+            }
+            if (wait.compareTo(maxWait) <= 0) {
+                return Mono.delay(wait).then(acquire(credentialKey));
+            }
+            bucket.recordRejection();
+            return Mono.error(new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                    "GitHub APIのレート制限に達しました。" + wait.toSeconds() + "秒後に再試行してください。"));
+        });
+    }
+
+    /**
+     * GitHubのレスポンスヘッダーからバケットを更新する。
+     */
+    public void update(String credentialKey, HttpHeaders headers) {
+        String limit = headers.getFirst("X-RateLimit-Limit");
+        String remaining = headers.getFirst("X-RateLimit-Remaining");
+        String reset = headers.getFirst("X-RateLimit-Reset");
+        if (limit == null || remaining == null || reset == null) {
+            return;
+        }
+        if (buckets.size() >= maxBuckets && !buckets.containsKey(credentialKey)) {
+            purgeExpired();
+        }
+        try {
+            buckets.computeIfAbsent(credentialKey, key -> new Bucket())
+                    .update(Long.parseLong(limit), Long.parseLong(remaining), Instant.ofEpochSecond(Long.parseLong(reset)));
+        } catch (NumberFormatException e) {
+            System.err.println("GitHubのレート制限ヘッダーが不正です: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 残りが low-watermark を下回っているか（他のトークンに切り替える目安）。
+     */
+    public boolean isLow(String credentialKey) {
+        Bucket bucket = buckets.get(credentialKey);
+        return bucket != null && bucket.isBelow(Instant.now(), lowWatermark);
+    }
+
+    @ReadOperation
+    public Map<String, Object> buckets() {
+        Map<String, Object> result = new TreeMap<>();
+        buckets.forEach((key, bucket) -> result.put(key, bucket.snapshot()));
+        return result;
+    }
+
+    private void purgeExpired() {
+        Instant threshold = Instant.now().minus(Duration.ofHours(1));
+        buckets.values().removeIf(bucket -> bucket.isResetBefore(threshold));
+    }
+
+    private static final class Bucket {
+        private long limit;
+        private long remaining;
+        private Instant resetAt;
+        private long rejected;
+
+        synchronized void update(long limit, long remaining, Instant resetAt) {
+            if (this.resetAt != null && this.resetAt.equals(resetAt)) {
+                // 同じウィンドウ内なら、実行中のリクエスト分を差し引いた手元の値を優先する
+                this.remaining = Math.min(this.remaining, remaining);
+            } else {
+                this.remaining = remaining;
+            }
+            this.limit = limit;
+            this.resetAt = resetAt;
+        }
+
+        /**
+         * 確保できたらDuration.ZERO、できなければリセットまでの待ち時間を返す。
+         */
+        synchronized Duration tryReserve(Instant now, int minRemaining) {
+            refillIfReset(now);
+            if (remaining > minRemaining) {
+                remaining--;
+                return Duration.ZERO;
+            }
+            // リセット時刻ちょうどだとGitHub側がまだ切り替わっていないことがあるので1秒余裕を持たせる
+            return Duration.between(now, resetAt).plusSeconds(1);
+        }
+
+        synchronized void recordRejection() {
+            rejected++;
+        }
+
+        synchronized boolean isBelow(Instant now, int threshold) {
+            refillIfReset(now);
+            return remaining < threshold;
+        }
+
+        synchronized boolean isResetBefore(Instant threshold) {
+            return resetAt.isBefore(threshold);
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("limit", limit);
+            snapshot.put("remaining", remaining);
+            snapshot.put("resetAt", resetAt.toString());
+            snapshot.put("rejected", rejected);
+            return snapshot;
+        }
+
+        private void refillIfReset(Instant now) {
+            if (!now.isBefore(resetAt)) {
+                // 次のヘッダーで正しい値に置き換わるまでは、1時間の新しいウィンドウとみなす
+                remaining = limit;
+                resetAt = now.plus(Duration.ofHours(1));
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.demo.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * GitHub APIレスポンスの保存先（条件付きリクエスト用）。
+ * URLとトークンの組ごとに ETag / Last-Modified と生のボディ（ページング用にLinkヘッダーも）を保持し、
+ * 304 Not Modified が返ったときにボディを再利用する。
+ * 保持するボディの合計サイズに上限を設け、古いものから追い出す。
+ */
+@Component
+public class GitHubResponseStore {
+
+    public record StoredResponse(String etag, String lastModified, String link, byte[] body) {
+    }
+
+    private final long maxTotalBytes;
+    private final long maxEntryBytes;
+    // アクセス順に並べ、先頭から追い出す
+    private final LinkedHashMap<String, StoredResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    public GitHubResponseStore(
+            @Value("${github.response-store.max-size:32MB}") DataSize maxTotalSize,
+            @Value("${github.response-store.max-entry-size:2MB}") DataSize maxEntrySize,
+            MeterRegistry meterRegistry
+    ) {
+        this.maxTotalBytes = maxTotalSize.toBytes();
+        this.maxEntryBytes = maxEntrySize.toBytes();
+        Gauge.builder("github.response.store.bytes", this, GitHubResponseStore::getTotalBytes).register(meterRegistry);
+    }
+
+    public synchronized StoredResponse get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * 検証子（ETag / Last-Modified）が無いレスポンスや大きすぎるボディは保存しない。
+     */
+    public synchronized void put(String key, String etag, String lastModified, String link, byte[] body) {
+        if ((etag == null && lastModified == null) || body.length > maxEntryBytes) {
+            remove(key);
+            return;
+        }
+        StoredResponse previous = entries.put(key, new StoredResponse(etag, lastModified, link, body));
+        if (previous != null) {
+            totalBytes -= previous.body().length;
+        }
+        totalBytes += body.length;
+
+        Iterator<StoredResponse> eldest = entries.values().iterator();
+        while (totalBytes > maxTotalBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().body().length;
+            eldest.remove();
+        }
+    }
+
+    public synchronized void remove(String key) {
+        StoredResponse removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.body().length;
+        }
+    }
+
+    public long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.demo.Service;
+
+/**
+ * プロンプトのトークン数の概算。
+ * 正確なトークナイザーは使わず、ASCIIは4文字で1トークン、それ以外（日本語など）は1文字1トークンとして
+ * 多めに見積もる。予算内に収めるための分割にだけ使う。
+ */
+final class PromptTokens {
+
+    private PromptTokens() {
+    }
+
+    static int estimate(CharSequence text) {
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 0x80) {
+                ascii++;
+            } else {
+                other++;
+            }
+        }
+        return (ascii + 3) / 4 + other;
+    }
+
+    /**
+     * 見積もりトークン数が maxTokens 以下になるよう先頭から切り詰める。
+     */
+    static String truncate(String text, int maxTokens) {
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 0x80) {
+                ascii++;
+            } else {
+                other++;
+            }
+            if ((ascii + 3) / 4 + other > maxTokens) {
+                return text.substring(0, i);
+            }
+        }
+        return text;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.demo.Service;
+
+import com.example.demo.dto.AnalysisDto;
+import com.example.demo.dto.TeamAnalysisDto;
+import com.example.demo.entity.Team;
+import com.example.demo.entity.TeamMember;
+import com.example.demo.entity.User;
+import com.example.demo.repository.TeamMemberRepository;
+import com.example.demo.repository.TeamRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * チーム単位の活動分析。
+ * 有効なメンバー全員の差分取り込みを同時実行数を絞って並列に行い、
+ * 日ごとの集計を1クエリでまとめて読んで、メンバー別の内訳とチーム合計を作る。
+ */
+@Service
+public class TeamAnalysisService {
+
+    private final TeamRepository teamRepository;
+    private final TeamMemberRepository teamMemberRepository;
+    private final DatabaseScheduler databaseScheduler;
+    private final ContributionIngestionService ingestionService;
+    private final UserActivityRollupService rollupService;
+    private final int memberConcurrency;
+    private final Duration ingestTimeout;
+
+    public TeamAnalysisService(
+            TeamRepository teamRepository,
+            TeamMemberRepository teamMemberRepository,
+            DatabaseScheduler databaseScheduler,
+            ContributionIngestionService ingestionService,
+            UserActivityRollupService rollupService,
+            @Value("${analysis.team.member-concurrency:4}") int memberConcurrency,
+            @Value("${analysis.team.ingest-timeout:10s}") Duration ingestTimeout
+    ) {
+        this.teamRepository = teamRepository;
+        this.teamMemberRepository = teamMemberRepository;
+        this.databaseScheduler = databaseScheduler;
+        this.ingestionService = ingestionService;
+        this.rollupService = rollupService;
+        this.memberConcurrency = memberConcurrency;
+        this.ingestTimeout = ingestTimeout;
+    }
+
+    /**
+     * チームの活動分析。チームが無い、またはリクエストしたユーザーがメンバーでも所有者でもない場合は404。
+     */
+    public Mono<TeamAnalysisDto> analyzeTeam(Long teamId, User requester, int durationDays) {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        LocalDate since = today.minusDays(durationDays);
+        return databaseScheduler.call(() -> loadTeam(teamId, requester))
+                .flatMap(team -> ingestAll(team.members())
+                        .then(rollupService.loadAll(team.members().stream().map(member -> member.getUser().getId()).toList(), since, today))
+                        .map(seriesByUser -> {
+                            DailyActivitySeries.Totals teamTotals = DailyActivitySeries.Totals.EMPTY;
+                            List<TeamAnalysisDto.MemberAnalysis> members = new ArrayList<>();
+                            for (TeamMember member : team.members()) {
+                                User user = member.getUser();
+                                DailyActivitySeries.Totals totals = seriesByUser.get(user.getId()).sum(since, today);
+                                teamTotals = teamTotals.plus(totals);
+                                members.add(TeamAnalysisDto.MemberAnalysis.builder()
+                                        .userId(user.getId())
+                                        .username(user.getUsername())
+                                        .avatarUrl(user.getAvatarUrl())
+                                        .role(member.getRole())
+                                        .analysis(AnalysisService.buildAnalysisDto(totals, since, today))
+                                        .build());
+                            }
+                            AnalysisDto total = AnalysisService.buildAnalysisDto(teamTotals, since, today);
+                            return TeamAnalysisDto.builder()
+                                    .teamId(team.team().getId())
+                                    .teamName(team.team().getName())
+                                    .total(total)
+                                    .members(members)
+                                    .build();
+                        }));
+    }
+
+    private record TeamWithMembers(Team team, List<TeamMember> members) {
+    }
+
+    private TeamWithMembers loadTeam(Long teamId, User requester) {
+        Team team = teamRepository.findById(teamId)
+                .filter(t -> t.getDeletedAt() == null)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "チームが見つかりません"));
+        List<TeamMember> members = teamMemberRepository.findByTeamIdAndDeletedAtIsNull(teamId).stream()
+                .filter(member -> member.getUser().getDeletedAt() == null)
+                .toList();
+        boolean allowed = team.getOwner().getId().equals(requester.getId())
+                || members.stream().anyMatch(member -> member.getUser().getId().equals(requester.getId()));
+        if (!allowed) {
+            // チームの存在自体を明かさない
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "チームが見つかりません");
+        }
+        return new TeamWithMembers(team, members);
+    }
+
+    /**
+     * 各メンバーの差分取り込み。失敗・タイムアウトしたメンバーは取り込み済みのデータで集計する。
+     * タイムアウトしても取り込み自体は取り消さずバックグラウンドで最後まで続け、取得したイベントを保存する
+     * （取り消すと保存前に捨てられ、次のリクエストでも同じページを取り直すことになるため）。
+     * 同時実行数は実際の取り込みで数え、タイムアウト後も続いている取り込みが終わるまで次のメンバーは始めない。
+     */
+    private Mono<Void> ingestAll(List<TeamMember> members) {
+        return Mono.defer(() -> {
+            // メンバーごとに、取り込みが終わるか開始から ingest-timeout が経つと完了する
+            List<Sinks.Empty<Void>> settled = new ArrayList<>();
+            members.forEach(member -> settled.add(Sinks.empty()));
+            Flux.range(0, members.size())
+                    .flatMap(i -> {
+                        User user = members.get(i).getUser();
+                        Sinks.Empty<Void> sink = settled.get(i);
+                        Disposable timer = Mono.delay(ingestTimeout).subscribe(tick -> sink.tryEmitEmpty());
+                        return ingestionService.ingest(user)
+                                .onErrorResume(error -> {
+                                    System.err.println("GitHubイベントの取り込みに失敗しました: user=" + user.getId() + " " + error.getMessage());
+                                    return Mono.empty();
+                                })
+                                .doFinally(signal -> {
+                                    timer.dispose();
+                                    sink.tryEmitEmpty();
+                                });
+                    }, memberConcurrency)
+                    .subscribe();
+            return Mono.when(settled.stream().map(Sinks.Empty::asMono).toList());
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.Service;
+
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 上流サービス（GitHub / Gemini）ごとの WebClient.Builder を作る。
+ * サービスごとに別の ConnectionProvider を持たせ、Geminiが遅くなってもGitHubへの接続が枯渇しないようにする。
+ * 接続数・接続待ち・タイムアウトは upstream.&lt;name&gt;.* で設定する。
+ */
+@Component
+public class UpstreamClients {
+
+    private final WebClient.Builder webClientBuilder;
+    private final Environment environment;
+    private final List<ConnectionProvider> providers = new ArrayList<>();
+
+    public UpstreamClients(WebClient.Builder webClientBuilder, Environment environment) {
+        this.webClientBuilder = webClientBuilder;
+        this.environment = environment;
+    }
+
+    /**
+     * name 専用の接続プールとタイムアウトを持つ WebClient.Builder を返す。
+     */
+    public WebClient.Builder builder(String name) {
+        String prefix = "upstream." + name + ".";
+        ConnectionProvider provider = ConnectionProvider.builder(name)
+                .maxConnections(environment.getProperty(prefix + "max-connections", Integer.class, 50))
+                .pendingAcquireMaxCount(environment.getProperty(prefix + "pending-acquire-max-count", Integer.class, 100))
+                .pendingAcquireTimeout(environment.getProperty(prefix + "pending-acquire-timeout", Duration.class, Duration.ofSeconds(5)))
+                .maxIdleTime(environment.getProperty(prefix + "max-idle-time", Duration.class, Duration.ofSeconds(30)))
+                .metrics(true)
+                .build();
+        providers.add(provider);
+        Duration connectTimeout = environment.getProperty(prefix + "connect-timeout", Duration.class, Duration.ofSeconds(5));
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(environment.getProperty(prefix + "response-timeout", Duration.class, Duration.ofSeconds(30)));
+        return webClientBuilder.clone().clientConnector(new ReactorClientHttpConnector(httpClient));
+    }
+
+    /**
+     * name 向けのリトライ設定。接続エラー・タイムアウト・5xxだけを、揺らぎを付けた指数バックオフでやり直す。
+     * 冪等な呼び出し（GET）にだけ使う。
+     */
+    public RetryBackoffSpec retry(String name) {
+        String prefix = "upstream." + name + ".retry.";
+        return Retry.backoff(environment.getProperty(prefix + "max-attempts", Integer.class, 2),
+                        environment.getProperty(prefix + "min-backoff", Duration.class, Duration.ofMillis(200)))
+                .maxBackoff(environment.getProperty(prefix + "max-backoff", Duration.class, Duration.ofSeconds(2)))
+                .jitter(0.5)
+                .filter(UpstreamClients::isTransient)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    /**
+     * name 向けのサーキットブレーカー。
+     */
+    CircuitBreaker circuitBreaker(String name) {
+        String prefix = "upstream." + name + ".circuit-breaker.";
+        return new CircuitBreaker(name,
+                environment.getProperty(prefix + "window-size", Integer.class, 20),
+                environment.getProperty(prefix + "minimum-calls", Integer.class, 10),
+                environment.getProperty(prefix + "failure-rate-threshold", Double.class, 0.5),
+                environment.getProperty(prefix + "open-duration", Duration.class, Duration.ofSeconds(30)),
+                error -> isTransient(error) || isRateLimited(error),
+                Clock.systemUTC());
+    }
+
+    /**
+     * 上流の一時的な不調によるエラーか（接続エラー・タイムアウト・5xx）。
+     */
+    static boolean isTransient(Throwable error) {
+        if (error instanceof WebClientRequestException || error instanceof TimeoutException) {
+            return true;
+        }
+        return error instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError();
+    }
+
+    static boolean isRateLimited(Throwable error) {
+        return error instanceof WebClientResponseException response && response.getStatusCode().value() == 429;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        providers.forEach(ConnectionProvider::dispose);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.demo.Service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * user_daily_activity（ユーザー × 日の集計）の読み書き。
+ * コミットの取り込み時に増分を加算しておき、分析時は期間の日数分の行だけを読む。
+ */
+@Service
+public class UserActivityRollupService {
+
+    private static final String INCREMENT_SQL =
+            "INSERT INTO user_daily_activity (user_id, activity_date, total_commits, feature_commits, fix_commits, " +
+            "backend_files, frontend_files, other_files) VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (user_id, activity_date) DO UPDATE SET " +
+            "total_commits = user_daily_activity.total_commits + EXCLUDED.total_commits, " +
+            "feature_commits = user_daily_activity.feature_commits + EXCLUDED.feature_commits, " +
+            "fix_commits = user_daily_activity.fix_commits + EXCLUDED.fix_commits, " +
+            "backend_files = user_daily_activity.backend_files + EXCLUDED.backend_files, " +
+            "frontend_files = user_daily_activity.frontend_files + EXCLUDED.frontend_files, " +
+            "other_files = user_daily_activity.other_files + EXCLUDED.other_files";
+
+    private static final String SELECT_SQL =
+            "SELECT activity_date, total_commits, feature_commits, fix_commits, backend_files, frontend_files, other_files " +
+            "FROM user_daily_activity WHERE user_id = ? AND activity_date BETWEEN ? AND ? ORDER BY activity_date";
+
+    private static final String SELECT_USERS_SQL =
+            "SELECT user_id, activity_date, total_commits, feature_commits, fix_commits, backend_files, frontend_files, other_files " +
+            "FROM user_daily_activity WHERE user_id = ANY(?) AND activity_date BETWEEN ? AND ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseScheduler databaseScheduler;
+
+    public UserActivityRollupService(JdbcTemplate jdbcTemplate, DatabaseScheduler databaseScheduler) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseScheduler = databaseScheduler;
+    }
+
+    /**
+     * 日ごとの増分を加算する。呼び出し側のトランザクション内で実行する想定。
+     */
+    public void increment(Long userId, Collection<DailyActivitySeries.Day> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (DailyActivitySeries.Day day : deltas) {
+            rows.add(new Object[]{userId, day.date(), day.totalCommits(), day.featureCommits(), day.fixCommits(),
+                    day.backendFiles(), day.frontendFiles(), day.otherFiles()});
+        }
+        jdbcTemplate.batchUpdate(INCREMENT_SQL, rows);
+    }
+
+    /**
+     * from から to（両端含む）までの日ごとの集計を累積和にして返す。
+     */
+    public Mono<DailyActivitySeries> load(Long userId, LocalDate from, LocalDate to) {
+        return databaseScheduler.call(() -> DailyActivitySeries.of(from, to, jdbcTemplate.query(SELECT_SQL,
+                        (rs, rowNum) -> mapDay(rs), userId, from, to)));
+    }
+
+    /**
+     * 複数ユーザーの集計を1クエリで読み、ユーザーごとの累積和にして返す。行が無いユーザーも空の系列を持つ。
+     */
+    public Mono<Map<Long, DailyActivitySeries>> loadAll(Collection<Long> userIds, LocalDate from, LocalDate to) {
+        return databaseScheduler.call(() -> {
+                    Map<Long, List<DailyActivitySeries.Day>> rowsByUser = new HashMap<>();
+                    userIds.forEach(userId -> rowsByUser.put(userId, new ArrayList<>()));
+                    jdbcTemplate.query(SELECT_USERS_SQL, ps -> {
+                        ps.setArray(1, ps.getConnection().createArrayOf("bigint", userIds.toArray()));
+                        ps.setObject(2, from);
+                        ps.setObject(3, to);
+                    }, rs -> {
+                        rowsByUser.computeIfAbsent(rs.getLong("user_id"), id -> new ArrayList<>()).add(mapDay(rs));
+                    });
+                    Map<Long, DailyActivitySeries> series = new HashMap<>();
+                    rowsByUser.forEach((userId, rows) -> series.put(userId, DailyActivitySeries.of(from, to, rows)));
+                    return series;
+                });
+    }
+
+    private static DailyActivitySeries.Day mapDay(ResultSet rs) throws SQLException {
+        return new DailyActivitySeries.Day(
+                rs.getObject("activity_date", LocalDate.class),
+                rs.getLong("total_commits"),
+                rs.getLong("feature_commits"),
+                rs.getLong("fix_commits"),
+                rs.getLong("backend_files"),
+                rs.getLong("frontend_files"),
+                rs.getLong("other_files"));
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.demo.dto;
+
+/**
+ * 非同期分析ジョブの状態。
+ * status は queued / running / success / cache_hit / stale / error のいずれか。
+ * stale は分析に失敗し、以前の結果を返したことを表す。
+ * result は完了時のみ、error は失敗時のみ設定される。
+ */
+public record AnalysisJobStatus(
+        Long jobId,
+        String repository,
+        String status,
+        AnalysisResponse result,
+        String error
+) {
+    public boolean isDone() {
+        return "success".equals(status) || "cache_hit".equals(status)
+                || "stale".equals(status) || "error".equals(status);
+    }
+}
@@ -1,9 +1,27 @@
 package com.example.demo.dto; // パッケージ名は適宜調整してください
 
+import java.time.OffsetDateTime;
+
 // recordを使うと、フィールドを定義するだけで自動的にコンストラクタやgetterが作られます
 public record AnalysisResponse(
         String repository,
         String analysisResult,
-        String model
+        String model,
+        // 分析が実行された日時と鮮度（fresh / stale / stale_if_error）。キャッシュから返す場合に付く
+        OffsetDateTime analyzedAt,
+        String freshness
 ) {
-}
\ No newline at end of file
+    public static final String FRESH = "fresh";
+    // 期限切れだが使える結果。裏で再分析している
+    public static final String STALE = "stale";
+    // 再分析に失敗したため、最後に成功した古い結果を返している
+    public static final String STALE_IF_ERROR = "stale_if_error";
+
+    public AnalysisResponse(String repository, String analysisResult, String model) {
+        this(repository, analysisResult, model, null, null);
+    }
+
+    public AnalysisResponse withFreshness(OffsetDateTime analyzedAt, String freshness) {
+        return new AnalysisResponse(repository, analysisResult, model, analyzedAt, freshness);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * 複数リポジトリの一括分析リクエスト。
+ */
+public record BatchAnalysisRequest(
+        List<Repository> repositories
+) {
+    public record Repository(String owner, String repo) {
+        public String fullName() {
+            return owner + "/" + repo;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * 一括分析の結果。リクエストと同じ順でリポジトリごとの結果またはエラーを返す。
+ * status は cache_hit / success / error のいずれか。
+ */
+public record BatchAnalysisResponse(
+        List<Item> results
+) {
+    public record Item(
+            String repository,
+            String status,
+            AnalysisResponse result,
+            String error
+    ) {
+    }
+}
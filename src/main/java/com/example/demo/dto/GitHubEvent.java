@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * GitHubの公開イベントのうち、取り込みに必要な項目だけを持つ。
+ * commits は PushEvent の payload.commits（それ以外のイベントでは空）。
+ */
+public record GitHubEvent(
+        String id,
+        String type,
+        String repoName,
+        OffsetDateTime createdAt,
+        List<Commit> commits
+) {
+    public record Commit(String sha, String message, String url) {
+    }
+}
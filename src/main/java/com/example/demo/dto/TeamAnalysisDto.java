@@ -0,0 +1,26 @@
+package com.example.demo.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@Builder
+public class TeamAnalysisDto {
+    private Long teamId;
+    private String teamName;
+    // チーム全体の合計（期間・週次トレンド・作業分布）
+    private AnalysisDto total;
+    private List<MemberAnalysis> members;
+
+    @Getter
+    @Builder
+    public static class MemberAnalysis {
+        private Long userId;
+        private String username;
+        private String avatarUrl;
+        private String role;
+        private AnalysisDto analysis;
+    }
+}
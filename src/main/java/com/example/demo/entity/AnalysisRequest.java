@@ -23,4 +23,7 @@ public class AnalysisRequest {
 
     @Column(nullable = false)
     private OffsetDateTime requestedAt = OffsetDateTime.now();
+
+    // 非同期ジョブの状態が最後に変わった日時
+    private OffsetDateTime updatedAt;
 }
\ No newline at end of file
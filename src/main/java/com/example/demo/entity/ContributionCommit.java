@@ -0,0 +1,40 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+
+@Entity
+@Table(name = "contribution_commits")
+@Getter
+@Setter
+public class ContributionCommit {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // 取り込み元のPushEvent (user_contributions.event_id)
+    @Column(name = "event_id", nullable = false)
+    private String eventId;
+
+    // 集計クエリを1本で済ませるため、イベントのuser_idとcreated_atを複製して持つ
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private String sha;
+
+    private String message;
+
+    private String url;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    // URLから推定した作業領域 (0: その他, 1: バックエンド, 2: フロントエンド)。詳細を反映済みならnull
+    @Column(name = "area_guess")
+    private Short areaGuess;
+}
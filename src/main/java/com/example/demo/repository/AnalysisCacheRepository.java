@@ -2,12 +2,33 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.AnalysisCache;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AnalysisCacheRepository extends JpaRepository<AnalysisCache, Long> {
 
     Optional<AnalysisCache> findFirstByRepoOwnerAndRepoNameAndAnalyzedAtAfterOrderByAnalyzedAtDesc(
             String repoOwner, String repoName, OffsetDateTime analyzedAt);
-}
\ No newline at end of file
+
+    // 一括分析用。owner と name の組み合わせは呼び出し側で絞り込む
+    List<AnalysisCache> findByRepoOwnerInAndRepoNameInAndAnalyzedAtAfter(
+            Collection<String> repoOwners, Collection<String> repoNames, OffsetDateTime analyzedAt);
+
+    // リポジトリごとに1行だけ持つ。より新しい分析結果でだけ上書きする
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO analysis_caches (repo_owner, repo_name, result_json, analyzed_at) " +
+            "VALUES (:repoOwner, :repoName, CAST(:resultJson AS jsonb), :analyzedAt) " +
+            "ON CONFLICT (repo_owner, repo_name) DO UPDATE " +
+            "SET result_json = EXCLUDED.result_json, analyzed_at = EXCLUDED.analyzed_at " +
+            "WHERE analysis_caches.analyzed_at < EXCLUDED.analyzed_at", nativeQuery = true)
+    int upsert(@Param("repoOwner") String repoOwner, @Param("repoName") String repoName,
+               @Param("resultJson") String resultJson, @Param("analyzedAt") OffsetDateTime analyzedAt);
+}
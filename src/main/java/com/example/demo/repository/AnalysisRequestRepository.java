@@ -2,6 +2,18 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.AnalysisRequest;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
 
 public interface AnalysisRequestRepository extends JpaRepository<AnalysisRequest, Long> {
-}
\ No newline at end of file
+
+    // 非同期ジョブの状態更新（queued → running → success / cache_hit / error）
+    @Transactional
+    @Modifying
+    @Query("update AnalysisRequest r set r.status = :status, r.updatedAt = :updatedAt where r.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") String status, @Param("updatedAt") OffsetDateTime updatedAt);
+}
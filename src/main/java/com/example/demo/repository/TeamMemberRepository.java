@@ -0,0 +1,14 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.TeamMember;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface TeamMemberRepository extends JpaRepository<TeamMember, Long> {
+
+    // 論理削除されていないメンバー（ユーザー情報も一緒に読む）
+    @EntityGraph(attributePaths = "user")
+    List<TeamMember> findByTeamIdAndDeletedAtIsNull(Long teamId);
+}
@@ -14,15 +14,21 @@ import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Set;
 
 @Component
 public class JwtTokenProvider {
 
     private final SecretKey key;
     private final long validityInMilliseconds = 3600000; // 1時間
+    // 管理者として扱うGitHub ID（監視用エンドポイントの一部を見られる）
+    private final Set<String> adminGithubIds;
 
-    public JwtTokenProvider(@Value("${jwt.secret}") String secretKey) {
+    public JwtTokenProvider(@Value("${jwt.secret}") String secretKey,
+                            @Value("${security.admin.github-ids:}") Set<String> adminGithubIds) {
         this.key = Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
+        this.adminGithubIds = adminGithubIds;
     }
 
     public String createToken(Authentication authentication) {
@@ -47,7 +53,10 @@ public class JwtTokenProvider {
         String githubId = claims.getSubject();
 
         // ここではシンプルな権限を付与
-        return new UsernamePasswordAuthenticationToken(githubId, null, Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER")));
+        List<SimpleGrantedAuthority> authorities = adminGithubIds.contains(githubId)
+                ? List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN"))
+                : Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"));
+        return new UsernamePasswordAuthenticationToken(githubId, null, authorities);
     }
 
     public boolean validateToken(String token) {
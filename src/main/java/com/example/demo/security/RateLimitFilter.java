@@ -0,0 +1,215 @@
+package com.example.demo.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.PathContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 認証済みユーザー（GitHub ID）ごとのレート制限。JwtAuthenticationFilter の後で実行する。
+ * GitHub / Gemini を呼ぶエンドポイントだけを対象に、エンドポイントの種類ごとに別のバケットで数える。
+ * 応答には RateLimit-Limit / RateLimit-Remaining / RateLimit-Reset を付け、超えた場合は429と Retry-After を返す。
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    /**
+     * 制限の単位になるエンドポイントの種類。
+     */
+    enum EndpointClass {
+        // Geminiを呼ぶリポジトリ分析
+        ANALYSIS,
+        // GitHubのイベントを取り込む活動分析
+        ACTIVITY
+    }
+
+    private record Route(String method, PathPattern pattern, EndpointClass endpointClass) {
+    }
+
+    private static final List<Route> ROUTES = List.of(
+            route("POST", "/api/repositories/{owner}/{repo}/analysis", EndpointClass.ANALYSIS),
+            route("POST", "/api/repositories/{owner}/{repo}/analysis/jobs", EndpointClass.ANALYSIS),
+            route("GET", "/api/repositories/{owner}/{repo}/analysis/stream", EndpointClass.ANALYSIS),
+            route("POST", "/api/analysis/batch", EndpointClass.ANALYSIS),
+            route("GET", "/api/analysis", EndpointClass.ACTIVITY),
+            route("GET", "/api/teams/{teamId}/analysis", EndpointClass.ACTIVITY)
+    );
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<EndpointClass, Limit> limits = new HashMap<>();
+    // エンドポイントの種類ごとに GitHub ID → バケット
+    private final Map<EndpointClass, ConcurrentHashMap<Long, Bucket>> buckets = new HashMap<>();
+
+    @Autowired
+    public RateLimitFilter(
+            @Value("${rate-limit.analysis.capacity:10}") int analysisCapacity,
+            @Value("${rate-limit.analysis.period:1m}") Duration analysisPeriod,
+            @Value("${rate-limit.activity.capacity:30}") int activityCapacity,
+            @Value("${rate-limit.activity.period:1m}") Duration activityPeriod
+    ) {
+        limits.put(EndpointClass.ANALYSIS, new Limit(analysisCapacity, analysisPeriod));
+        limits.put(EndpointClass.ACTIVITY, new Limit(activityCapacity, activityPeriod));
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            buckets.put(endpointClass, new ConcurrentHashMap<>());
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        EndpointClass endpointClass = classify(request);
+        Long githubId = endpointClass != null ? currentGithubId() : null;
+        if (githubId == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Limit limit = limits.get(endpointClass);
+        ConcurrentHashMap<Long, Bucket> userBuckets = buckets.get(endpointClass);
+        Bucket bucket = userBuckets.get(githubId);
+        if (bucket == null) {
+            bucket = userBuckets.computeIfAbsent(githubId, id -> new Bucket());
+        }
+        long now = System.nanoTime();
+        long waitNanos = bucket.tryConsume(limit, now);
+        response.setHeader("RateLimit-Limit", String.valueOf(limit.capacity()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(bucket.remaining(limit, now)));
+        response.setHeader("RateLimit-Reset", String.valueOf(toSeconds(bucket.resetNanos(now))));
+        if (waitNanos > 0) {
+            reject(response, toSeconds(waitNanos));
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * 対象外のリクエストは null。パスに "analysis" を含まないものはパターン照合もしない。
+     */
+    static EndpointClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith("/api/") || !path.contains("analysis")) {
+            return null;
+        }
+        PathContainer container = PathContainer.parsePath(path);
+        for (Route route : ROUTES) {
+            if (route.method().equals(request.getMethod()) && route.pattern().matches(container)) {
+                return route.endpointClass();
+            }
+        }
+        return null;
+    }
+
+    private static Long currentGithubId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        try {
+            return Long.valueOf(authentication.getName());
+        } catch (NumberFormatException e) {
+            // 不正なIDはコントローラー側で401にする
+            return null;
+        }
+    }
+
+    private void reject(HttpServletResponse response, long retryAfterSeconds) throws IOException {
+        response.setStatus(429);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType("application/json;charset=UTF-8");
+        Map<String, Object> body = new HashMap<>();
+        body.put("error", "Too Many Requests");
+        body.put("message", "リクエストが多すぎます。" + retryAfterSeconds + "秒後に再試行してください。");
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    /**
+     * 満タンに戻ったバケットは新しく作ったものと同じなので、定期的に捨てる。
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.eviction-interval:5m}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        buckets.values().forEach(map -> map.values().removeIf(bucket -> bucket.isFull(now)));
+    }
+
+    int bucketCount() {
+        return buckets.values().stream().mapToInt(Map::size).sum();
+    }
+
+    private static long toSeconds(long nanos) {
+        return Math.max(1, (nanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    private static Route route(String method, String pattern, EndpointClass endpointClass) {
+        return new Route(method, PathPatternParser.defaultInstance.parse(pattern), endpointClass);
+    }
+
+    /**
+     * capacity 回までまとめて呼べ、period で満タンに戻る。
+     */
+    record Limit(int capacity, Duration period) {
+        long intervalNanos() {
+            return period.toNanos() / capacity;
+        }
+    }
+
+    /**
+     * トークンバケット（GCRA）。次に1トークン分空く理論上の時刻だけを持ち、CASで更新するのでロックを取らない。
+     */
+    static final class Bucket {
+        private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+        /**
+         * 1トークン使う。使えた場合は0、使えなかった場合は使えるようになるまでのナノ秒を返す。
+         */
+        long tryConsume(Limit limit, long now) {
+            long interval = limit.intervalNanos();
+            long burst = interval * limit.capacity();
+            while (true) {
+                long current = theoreticalArrival.get();
+                long base = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+                long next = base + interval;
+                if (next - now > burst) {
+                    return next - now - burst;
+                }
+                if (theoreticalArrival.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        int remaining(Limit limit, long now) {
+            long used = resetNanos(now);
+            return (int) Math.max(0, limit.capacity() - (used + limit.intervalNanos() - 1) / limit.intervalNanos());
+        }
+
+        // 満タンに戻るまでのナノ秒
+        long resetNanos(long now) {
+            long current = theoreticalArrival.get();
+            return current == Long.MIN_VALUE ? 0 : Math.max(0, current - now);
+        }
+
+        boolean isFull(long now) {
+            return resetNanos(now) == 0;
+        }
+    }
+}
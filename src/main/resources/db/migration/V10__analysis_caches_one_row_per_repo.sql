@@ -0,0 +1,13 @@
+-- V10__analysis_caches_one_row_per_repo.sql
+-- analysis_caches をリポジトリごとに最新の1行だけ持つ形にする（保存はUPSERT）
+
+-- 同じリポジトリの古い行を削除する
+DELETE FROM analysis_caches a
+USING analysis_caches b
+WHERE a.repo_owner = b.repo_owner
+  AND a.repo_name = b.repo_name
+  AND (a.analyzed_at < b.analyzed_at OR (a.analyzed_at = b.analyzed_at AND a.id < b.id));
+
+-- 検索キーそのものの一意インデックス。analyzed_at も含め、鮮度の確認はインデックスだけで済ませる
+CREATE UNIQUE INDEX IF NOT EXISTS idx_analysis_caches_repo_owner_repo_name
+    ON analysis_caches(repo_owner, repo_name) INCLUDE (analyzed_at);
@@ -0,0 +1,22 @@
+-- V11__recount_conventional_commit_types.sql
+-- V9 の初期値と取り込み時の加算は任意の「単語:」を Conventional Commits の接頭辞として扱っていたため、
+-- 「Bugfix: ...」「parser: fix ...」などが機能追加・修正のどちらにも数えられていなかった。
+-- 既知の種類（CommitClassifier.CONVENTIONAL_TYPES と同じ一覧）だけを接頭辞として、取り込み済みのコミットから数え直す
+
+UPDATE user_daily_activity a
+SET feature_commits = s.feature_commits,
+    fix_commits = s.fix_commits
+FROM (
+    SELECT c.user_id,
+           (c.created_at AT TIME ZONE 'UTC')::date AS activity_date,
+           COUNT(*) FILTER (WHERE CASE WHEN c.message ~* '^(feat|fix|chore|docs|refactor|test|style|perf|build|ci|revert)(\([^)\n]*\))?!?:'
+                                       THEN c.message ~* '^feat[(!:]'
+                                       ELSE c.message ~* '(feature|add|implement)' END) AS feature_commits,
+           COUNT(*) FILTER (WHERE CASE WHEN c.message ~* '^(feat|fix|chore|docs|refactor|test|style|perf|build|ci|revert)(\([^)\n]*\))?!?:'
+                                       THEN c.message ~* '^fix[(!:]'
+                                       ELSE c.message ~* '(fix|bug)' END) AS fix_commits
+    FROM contribution_commits c
+    GROUP BY c.user_id, (c.created_at AT TIME ZONE 'UTC')::date
+) s
+WHERE a.user_id = s.user_id
+  AND a.activity_date = s.activity_date;
@@ -0,0 +1,15 @@
+-- V12__add_contribution_commit_area_guess.sql
+-- コミット詳細（変更ファイル）を取得する前にURLから推定した作業領域を記録する。
+-- 詳細を取得できたら user_daily_activity の推定分を差し引いて実際のファイル件数を加算し、NULLに戻す
+
+ALTER TABLE contribution_commits ADD COLUMN IF NOT EXISTS area_guess SMALLINT; -- 推定した作業領域 (0: その他, 1: バックエンド, 2: フロントエンド)。詳細を反映済みならNULL
+
+-- 詳細の無い取り込み済みコミットは V9 の初期値や取り込み時の加算で推定値が使われている
+UPDATE contribution_commits c
+SET area_guess = CASE WHEN c.url ILIKE '%frontend%' THEN 2
+                      WHEN c.url ILIKE '%backend%' THEN 1
+                      ELSE 0 END
+WHERE NOT EXISTS (SELECT 1 FROM commit_details d WHERE d.sha = c.sha);
+
+-- 未反映のコミットの検索用
+CREATE INDEX IF NOT EXISTS idx_contribution_commits_user_id_area_guess ON contribution_commits(user_id) WHERE area_guess IS NOT NULL;
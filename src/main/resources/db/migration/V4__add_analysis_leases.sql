@@ -0,0 +1,10 @@
+-- V4__add_analysis_leases.sql
+-- 同一リポジトリの分析を複数インスタンスで重複実行しないためのリース
+
+CREATE TABLE IF NOT EXISTS analysis_leases (
+    repo_owner VARCHAR(255) NOT NULL, -- 分析対象リポジトリのオーナー名
+    repo_name VARCHAR(255) NOT NULL, -- 分析対象リポジトリ名
+    holder VARCHAR(255) NOT NULL, -- リースを保持しているインスタンスのID
+    expires_at TIMESTAMPTZ NOT NULL, -- リースの有効期限 (これを過ぎた行は他インスタンスが奪える)
+    PRIMARY KEY (repo_owner, repo_name)
+);
@@ -0,0 +1,18 @@
+-- V5__add_contribution_commits.sql
+-- GitHubイベントの差分取り込み用。PushEventに含まれるコミットを保存する
+
+CREATE TABLE IF NOT EXISTS contribution_commits (
+    id BIGSERIAL PRIMARY KEY, -- コミット行を一意に識別するID (主キー)
+    event_id VARCHAR(255) NOT NULL REFERENCES user_contributions(event_id), -- 取り込み元のPushEventのID
+    user_id BIGINT NOT NULL REFERENCES users(id), -- ユーザーのID (usersテーブルのID)
+    sha VARCHAR(64) NOT NULL, -- コミットのSHA
+    message TEXT, -- コミットメッセージ
+    url TEXT, -- コミットのAPI URL
+    created_at TIMESTAMPTZ NOT NULL, -- イベントの発生日時 (user_contributions.created_at と同じ値)
+    UNIQUE (event_id, sha)
+);
+
+CREATE INDEX IF NOT EXISTS idx_contribution_commits_user_id_created_at ON contribution_commits(user_id, created_at);
+
+-- 取り込み済みの最新イベント (ウォーターマーク) の検索用
+CREATE INDEX IF NOT EXISTS idx_user_contributions_user_id_created_at ON user_contributions(user_id, created_at DESC);
@@ -0,0 +1,4 @@
+-- V6__add_analysis_request_updated_at.sql
+-- 非同期分析ジョブの状態遷移 (queued → running → success / cache_hit / error) を記録する
+
+ALTER TABLE analysis_requests ADD COLUMN IF NOT EXISTS updated_at TIMESTAMPTZ; -- 状態が最後に変わった日時
@@ -0,0 +1,11 @@
+-- V7__add_gemini_response_caches.sql
+-- 同じプロンプトへのGeminiの応答を再利用するためのキャッシュ（モデルID + プロンプトのハッシュがキー）
+
+CREATE TABLE IF NOT EXISTS gemini_response_caches (
+    prompt_hash VARCHAR(64) PRIMARY KEY, -- SHA-256(モデルID + プロンプト) の16進表記
+    model VARCHAR(255) NOT NULL, -- 応答を生成したモデルID
+    response_text TEXT NOT NULL, -- Geminiの応答テキスト
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(), -- 応答を保存した日時
+    expires_at TIMESTAMPTZ NOT NULL -- この日時を過ぎた行は使わない
+);
+CREATE INDEX IF NOT EXISTS idx_gemini_response_caches_expires_at ON gemini_response_caches(expires_at);
@@ -0,0 +1,10 @@
+-- V8__add_commit_details.sql
+-- コミットごとの変更ファイルの作業領域別件数。SHAが同じなら内容は変わらないので、一度取得したら更新しない
+
+CREATE TABLE IF NOT EXISTS commit_details (
+    sha VARCHAR(64) PRIMARY KEY, -- コミットのSHA
+    backend_files INT NOT NULL, -- バックエンドと判定した変更ファイル数
+    frontend_files INT NOT NULL, -- フロントエンドと判定した変更ファイル数
+    other_files INT NOT NULL, -- それ以外の変更ファイル数
+    fetched_at TIMESTAMPTZ NOT NULL DEFAULT NOW() -- GitHubから取得した日時
+);
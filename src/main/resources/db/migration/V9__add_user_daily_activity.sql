@@ -0,0 +1,35 @@
+-- V9__add_user_daily_activity.sql
+-- ユーザーごと・日ごと（UTC）のコミット集計。取り込み時に差分で加算し、任意の期間を日数分の行だけで集計する
+
+CREATE TABLE IF NOT EXISTS user_daily_activity (
+    user_id BIGINT NOT NULL REFERENCES users(id), -- ユーザーのID (usersテーブルのID)
+    activity_date DATE NOT NULL, -- 集計対象の日付 (UTC)
+    total_commits INT NOT NULL DEFAULT 0, -- コミット数
+    feature_commits INT NOT NULL DEFAULT 0, -- 機能追加と判定したコミット数
+    fix_commits INT NOT NULL DEFAULT 0, -- バグ修正と判定したコミット数
+    backend_files INT NOT NULL DEFAULT 0, -- バックエンドと判定した変更ファイル数
+    frontend_files INT NOT NULL DEFAULT 0, -- フロントエンドと判定した変更ファイル数
+    other_files INT NOT NULL DEFAULT 0, -- それ以外の変更ファイル数
+    PRIMARY KEY (user_id, activity_date)
+);
+
+-- 取り込み済みのコミットから初期値を作る（分類は既定のキーワード・接頭辞と同じ条件）
+INSERT INTO user_daily_activity (user_id, activity_date, total_commits, feature_commits, fix_commits,
+                                 backend_files, frontend_files, other_files)
+SELECT c.user_id,
+       (c.created_at AT TIME ZONE 'UTC')::date,
+       COUNT(*),
+       COUNT(*) FILTER (WHERE CASE WHEN c.message ~* '^[a-z]+(\([^)\n]*\))?!?:' THEN c.message ~* '^feat[(!:]'
+                                   ELSE c.message ~* '(feature|add|implement)' END),
+       COUNT(*) FILTER (WHERE CASE WHEN c.message ~* '^[a-z]+(\([^)\n]*\))?!?:' THEN c.message ~* '^fix[(!:]'
+                                   ELSE c.message ~* '(fix|bug)' END),
+       COALESCE(SUM(d.backend_files), 0)
+           + COUNT(*) FILTER (WHERE d.sha IS NULL AND c.url ILIKE '%backend%' AND c.url NOT ILIKE '%frontend%'),
+       COALESCE(SUM(d.frontend_files), 0)
+           + COUNT(*) FILTER (WHERE d.sha IS NULL AND c.url ILIKE '%frontend%'),
+       COALESCE(SUM(d.other_files), 0)
+           + COUNT(*) FILTER (WHERE d.sha IS NULL AND (c.url IS NULL OR (c.url NOT ILIKE '%frontend%' AND c.url NOT ILIKE '%backend%')))
+FROM contribution_commits c
+LEFT JOIN commit_details d ON d.sha = c.sha
+GROUP BY c.user_id, (c.created_at AT TIME ZONE 'UTC')::date
+ON CONFLICT (user_id, activity_date) DO NOTHING;
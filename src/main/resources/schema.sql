@@ -101,8 +101,9 @@ CREATE TABLE analysis_requests (
                                    user_id BIGINT NOT NULL REFERENCES users(id), -- リクエストしたユーザーのID (usersテーブルのID)
                                    repo_owner VARCHAR(255) NOT NULL, -- 分析対象リポジトリのオーナー名
                                    repo_name VARCHAR(255) NOT NULL, -- 分析対象リポジトリ名
-                                   status VARCHAR(50) NOT NULL, -- リクエストの状態 ('success', 'error' など)
-                                   requested_at TIMESTAMPTZ NOT NULL DEFAULT NOW() -- リクエストされた日時
+                                   status VARCHAR(50) NOT NULL, -- リクエストの状態 ('queued', 'running', 'success', 'error' など)
+                                   requested_at TIMESTAMPTZ NOT NULL DEFAULT NOW(), -- リクエストされた日時
+                                   updated_at TIMESTAMPTZ -- 状態が最後に変わった日時 (非同期ジョブ用)
 );
 CREATE INDEX idx_analysis_requests_user_id ON analysis_requests(user_id);
 
@@ -115,6 +116,7 @@ CREATE TABLE analysis_caches (
                                  analyzed_at TIMESTAMPTZ NOT NULL -- 分析が実行された日時
 );
 CREATE INDEX idx_analysis_caches_analyzed_at ON analysis_caches(analyzed_at);
+CREATE UNIQUE INDEX idx_analysis_caches_repo_owner_repo_name ON analysis_caches(repo_owner, repo_name) INCLUDE (analyzed_at);
 
 -- 10. user_contributions テーブル
 CREATE TABLE user_contributions (
@@ -126,4 +128,61 @@ CREATE TABLE user_contributions (
 );
 
 CREATE INDEX idx_user_contributions_user_id ON user_contributions(user_id);
-CREATE INDEX idx_user_contributions_created_at ON user_contributions(created_at);
\ No newline at end of file
+CREATE INDEX idx_user_contributions_created_at ON user_contributions(created_at);
+
+-- 11. analysis_leases テーブル
+CREATE TABLE analysis_leases (
+    repo_owner VARCHAR(255) NOT NULL, -- 分析対象リポジトリのオーナー名
+    repo_name VARCHAR(255) NOT NULL, -- 分析対象リポジトリ名
+    holder VARCHAR(255) NOT NULL, -- リースを保持しているインスタンスのID
+    expires_at TIMESTAMPTZ NOT NULL, -- リースの有効期限 (これを過ぎた行は他インスタンスが奪える)
+    PRIMARY KEY (repo_owner, repo_name)
+);
+
+-- 12. contribution_commits テーブル
+CREATE TABLE contribution_commits (
+    id BIGSERIAL PRIMARY KEY, -- コミット行を一意に識別するID (主キー)
+    event_id VARCHAR(255) NOT NULL REFERENCES user_contributions(event_id), -- 取り込み元のPushEventのID
+    user_id BIGINT NOT NULL REFERENCES users(id), -- ユーザーのID (usersテーブルのID)
+    sha VARCHAR(64) NOT NULL, -- コミットのSHA
+    message TEXT, -- コミットメッセージ
+    url TEXT, -- コミットのAPI URL
+    created_at TIMESTAMPTZ NOT NULL, -- イベントの発生日時 (user_contributions.created_at と同じ値)
+    area_guess SMALLINT, -- 推定した作業領域 (0: その他, 1: バックエンド, 2: フロントエンド)。詳細を反映済みならNULL
+    UNIQUE (event_id, sha)
+);
+CREATE INDEX idx_contribution_commits_user_id_created_at ON contribution_commits(user_id, created_at);
+CREATE INDEX idx_contribution_commits_user_id_area_guess ON contribution_commits(user_id) WHERE area_guess IS NOT NULL;
+CREATE INDEX idx_user_contributions_user_id_created_at ON user_contributions(user_id, created_at DESC);
+
+-- 13. gemini_response_caches テーブル
+CREATE TABLE gemini_response_caches (
+    prompt_hash VARCHAR(64) PRIMARY KEY, -- SHA-256(モデルID + プロンプト) の16進表記
+    model VARCHAR(255) NOT NULL, -- 応答を生成したモデルID
+    response_text TEXT NOT NULL, -- Geminiの応答テキスト
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(), -- 応答を保存した日時
+    expires_at TIMESTAMPTZ NOT NULL -- この日時を過ぎた行は使わない
+);
+CREATE INDEX idx_gemini_response_caches_expires_at ON gemini_response_caches(expires_at);
+
+-- 14. commit_details テーブル
+CREATE TABLE commit_details (
+    sha VARCHAR(64) PRIMARY KEY, -- コミットのSHA
+    backend_files INT NOT NULL, -- バックエンドと判定した変更ファイル数
+    frontend_files INT NOT NULL, -- フロントエンドと判定した変更ファイル数
+    other_files INT NOT NULL, -- それ以外の変更ファイル数
+    fetched_at TIMESTAMPTZ NOT NULL DEFAULT NOW() -- GitHubから取得した日時
+);
+
+-- 15. user_daily_activity テーブル
+CREATE TABLE user_daily_activity (
+    user_id BIGINT NOT NULL REFERENCES users(id), -- ユーザーのID (usersテーブルのID)
+    activity_date DATE NOT NULL, -- 集計対象の日付 (UTC)
+    total_commits INT NOT NULL DEFAULT 0, -- コミット数
+    feature_commits INT NOT NULL DEFAULT 0, -- 機能追加と判定したコミット数
+    fix_commits INT NOT NULL DEFAULT 0, -- バグ修正と判定したコミット数
+    backend_files INT NOT NULL DEFAULT 0, -- バックエンドと判定した変更ファイル数
+    frontend_files INT NOT NULL DEFAULT 0, -- フロントエンドと判定した変更ファイル数
+    other_files INT NOT NULL DEFAULT 0, -- それ以外の変更ファイル数
+    PRIMARY KEY (user_id, activity_date)
+);
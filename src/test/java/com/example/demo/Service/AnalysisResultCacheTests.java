@@ -0,0 +1,61 @@
+package com.example.demo.Service;
+
+import com.example.demo.dto.AnalysisResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisResultCacheTests {
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        AnalysisResultCache cache = new AnalysisResultCache(2, Duration.ofHours(1), new SimpleMeterRegistry());
+        OffsetDateTime now = OffsetDateTime.now();
+        cache.put("a", "one", new AnalysisResponse("a/one", "x", "m"), now);
+        cache.put("a", "two", new AnalysisResponse("a/two", "x", "m"), now);
+        assertNotNull(cache.get("a", "one"));
+        cache.put("a", "three", new AnalysisResponse("a/three", "x", "m"), now);
+
+        assertNull(cache.get("a", "two"));
+        assertNotNull(cache.get("a", "one"));
+        assertNotNull(cache.get("a", "three"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void ignoresEntriesOlderThanTtl() {
+        AnalysisResultCache cache = new AnalysisResultCache(10, Duration.ofHours(1), new SimpleMeterRegistry());
+        cache.put("a", "old", new AnalysisResponse("a/old", "x", "m"), OffsetDateTime.now().minusHours(2));
+
+        assertNull(cache.get("a", "old"));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void keepsExpiredEntriesForStaleReadsUntilStaleTtl() {
+        AnalysisResultCache cache = new AnalysisResultCache(10, Duration.ofHours(1), Duration.ofHours(24), new SimpleMeterRegistry());
+        OffsetDateTime analyzedAt = OffsetDateTime.now().minusHours(2);
+        cache.put("a", "stale", new AnalysisResponse("a/stale", "x", "m"), analyzedAt);
+        cache.put("a", "gone", new AnalysisResponse("a/gone", "x", "m"), OffsetDateTime.now().minusHours(25));
+
+        assertNull(cache.get("a", "stale"));
+        AnalysisResponse stale = cache.getStale("a", "stale");
+        assertNotNull(stale);
+        assertEquals(analyzedAt, stale.analyzedAt());
+        assertNull(cache.getStale("a", "gone"));
+    }
+
+    @Test
+    void marksFreshHits() {
+        AnalysisResultCache cache = new AnalysisResultCache(10, Duration.ofHours(1), new SimpleMeterRegistry());
+        cache.put("a", "one", new AnalysisResponse("a/one", "x", "m"), OffsetDateTime.now());
+
+        assertEquals(AnalysisResponse.FRESH, cache.get("a", "one").freshness());
+    }
+}
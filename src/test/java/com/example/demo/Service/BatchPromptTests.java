@@ -0,0 +1,81 @@
+package com.example.demo.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchPromptTests {
+
+    @Test
+    void packsRepositoriesWithinBudget() {
+        List<String> messages = List.of("a".repeat(400)); // 約100トークン
+        List<AnalysisService.RepositoryCommits> repositories = List.of(
+                new AnalysisService.RepositoryCommits("o/one", messages),
+                new AnalysisService.RepositoryCommits("o/two", messages),
+                new AnalysisService.RepositoryCommits("o/three", messages));
+        int instructions = PromptTokens.estimate(AnalysisService.BATCH_INSTRUCTIONS);
+
+        List<List<AnalysisService.RepositoryCommits>> batches =
+                AnalysisService.packBatches(repositories, instructions + 250);
+
+        assertEquals(2, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals("o/three", batches.get(1).get(0).repository());
+    }
+
+    @Test
+    void keepsRepositoryLargerThanBudgetInItsOwnBatch() {
+        List<String> messages = List.of("a".repeat(400), "b".repeat(400), "c".repeat(400));
+        int instructions = PromptTokens.estimate(AnalysisService.BATCH_INSTRUCTIONS);
+
+        List<List<AnalysisService.RepositoryCommits>> batches = AnalysisService.packBatches(List.of(
+                new AnalysisService.RepositoryCommits("o/small", List.of("x")),
+                new AnalysisService.RepositoryCommits("o/big", messages),
+                new AnalysisService.RepositoryCommits("o/other", List.of("y"))), instructions + 250);
+
+        assertEquals(2, batches.size());
+        assertEquals(List.of("o/big"), batches.get(0).stream().map(AnalysisService.RepositoryCommits::repository).toList());
+        assertEquals(3, batches.get(0).get(0).messages().size());
+        assertEquals(2, batches.get(1).size());
+    }
+
+    @Test
+    void chunksMessagesInOrderWithinBudget() {
+        List<String> messages = List.of("a".repeat(40), "b".repeat(40), "c".repeat(40)); // 各約12トークン
+
+        List<List<String>> chunks = AnalysisService.chunkByTokens(messages, 25);
+
+        assertEquals(2, chunks.size());
+        assertEquals(List.of("a".repeat(40), "b".repeat(40)), chunks.get(0));
+        assertEquals(List.of("c".repeat(40)), chunks.get(1));
+    }
+
+    @Test
+    void truncatesSingleMessageLargerThanChunk() {
+        List<List<String>> chunks = AnalysisService.chunkByTokens(List.of("あ".repeat(100)), 10);
+
+        assertEquals(1, chunks.size());
+        assertTrue(PromptTokens.estimate("- " + chunks.get(0).get(0) + "\n") <= 10);
+    }
+
+    @Test
+    void splitsResponseByRepositoryHeadings() {
+        String text = "前置き\n### o/one\n今週のハイライト\nA\n\n### `o/two`\n今週のハイライト\nB\n";
+
+        Map<String, String> sections = AnalysisService.splitSections(text, List.of("o/one", "o/two", "o/three"));
+
+        assertEquals("今週のハイライト\nA", sections.get("o/one"));
+        assertEquals("今週のハイライト\nB", sections.get("o/two"));
+        assertNull(sections.get("o/three"));
+    }
+
+    @Test
+    void usesWholeResponseForSingleRepositoryWithoutHeading() {
+        Map<String, String> sections = AnalysisService.splitSections("今週のハイライト\nA\n", List.of("o/one"));
+
+        assertEquals("今週のハイライト\nA", sections.get("o/one"));
+    }
+}
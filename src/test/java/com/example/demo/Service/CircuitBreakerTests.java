@@ -0,0 +1,88 @@
+package com.example.demo.Service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTests {
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private final MutableClock clock = new MutableClock();
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 4, 4, 0.5, Duration.ofSeconds(30),
+            error -> error instanceof IllegalStateException, clock);
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        breaker.protect(Mono.just("ok")).block();
+        breaker.protect(Mono.just("ok")).block();
+        breaker.protect(Mono.error(new IllegalStateException())).onErrorResume(e -> Mono.empty()).block();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.protect(Mono.error(new IllegalStateException())).onErrorResume(e -> Mono.empty()).block();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(ResponseStatusException.class, () -> breaker.protect(Mono.just("ok")).block());
+    }
+
+    @Test
+    void ignoresErrorsThatAreNotFailures() {
+        for (int i = 0; i < 4; i++) {
+            breaker.protect(Mono.error(new IllegalArgumentException())).onErrorResume(e -> Mono.empty()).block();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void allowsOneTrialAfterOpenDurationAndClosesOnSuccess() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertFalse(breaker.tryAcquire());
+
+        clock.now = clock.now.plusSeconds(30);
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void reopensWhenTrialFails() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        clock.now = clock.now.plusSeconds(30);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+}
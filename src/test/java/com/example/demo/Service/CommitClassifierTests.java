@@ -0,0 +1,65 @@
+package com.example.demo.Service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommitClassifierTests {
+
+    private final CommitClassifier classifier = new CommitClassifier(
+            new String[]{"feature", "add", "implement", "追加"},
+            new String[]{"fix", "bug"},
+            new String[]{"feat"},
+            new String[]{"fix"},
+            new String[]{"frontend"},
+            new String[]{"backend"});
+
+    @Test
+    void matchesKeywordsCaseInsensitively() {
+        assertEquals(CommitClassifier.FEATURE, classifier.classify("Implement login page"));
+        assertEquals(CommitClassifier.FIX, classifier.classify("Resolve BUG in parser"));
+        assertEquals(CommitClassifier.FEATURE | CommitClassifier.FIX, classifier.classify("Add test and fix typo"));
+        assertEquals(CommitClassifier.FEATURE, classifier.classify("ログイン機能を追加"));
+        assertEquals(0, classifier.classify("Update README"));
+        assertEquals(0, classifier.classify(null));
+    }
+
+    @Test
+    void findsOverlappingKeywords() {
+        // "bu" から始まる途中の一致が失敗しても "bug" を見つけられること
+        assertEquals(CommitClassifier.FIX, classifier.classify("bubug"));
+        assertEquals(CommitClassifier.FEATURE, classifier.classify("aadd"));
+    }
+
+    @Test
+    void prefersConventionalCommitType() {
+        assertEquals(CommitClassifier.FEATURE, classifier.classify("feat: add search"));
+        assertEquals(CommitClassifier.FIX, classifier.classify("fix(api)!: add missing header"));
+        assertEquals(CommitClassifier.FEATURE, classifier.classify("Feat(ui): new button"));
+        assertEquals(0, classifier.classify("docs: add feature list"));
+    }
+
+    @Test
+    void ignoresTextThatOnlyLooksLikePrefix() {
+        assertEquals(-1, CommitClassifier.conventionalTypeEnd("Merge branch 'main': fix"));
+        assertEquals(-1, CommitClassifier.conventionalTypeEnd("fix(api broken"));
+        assertEquals(3, CommitClassifier.conventionalTypeEnd("fix: x"));
+    }
+
+    @Test
+    void treatsUnknownTypesAsPlainMessages() {
+        assertEquals(-1, CommitClassifier.conventionalTypeEnd("Bugfix: crash on login"));
+        assertEquals(CommitClassifier.FIX, classifier.classify("Bugfix: crash on login"));
+        assertEquals(CommitClassifier.FIX, classifier.classify("parser: fix NPE"));
+        assertEquals(CommitClassifier.FEATURE, classifier.classify("WIP: add export"));
+        assertEquals(0, classifier.classify("refactor(core): add helper"));
+    }
+
+    @Test
+    void classifiesArea() {
+        assertEquals(CommitClassifier.AREA_FRONTEND, classifier.classifyArea("https://api.github.com/repos/o/Frontend-app/commits/1"));
+        assertEquals(CommitClassifier.AREA_BACKEND, classifier.classifyArea("https://api.github.com/repos/o/backend/commits/1"));
+        assertEquals(CommitClassifier.AREA_FRONTEND, classifier.classifyArea("frontend-backend"));
+        assertEquals(CommitClassifier.AREA_OTHER, classifier.classifyArea(null));
+    }
+}
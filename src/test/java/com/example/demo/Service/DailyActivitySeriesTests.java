@@ -0,0 +1,36 @@
+package com.example.demo.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DailyActivitySeriesTests {
+
+    private static final LocalDate START = LocalDate.of(2026, 1, 1);
+
+    private final DailyActivitySeries series = DailyActivitySeries.of(START, START.plusDays(9), List.of(
+            new DailyActivitySeries.Day(START, 2, 1, 0, 3, 0, 1),
+            new DailyActivitySeries.Day(START.plusDays(4), 5, 2, 2, 0, 4, 0),
+            new DailyActivitySeries.Day(START.plusDays(9), 1, 0, 1, 1, 0, 0),
+            new DailyActivitySeries.Day(START.plusDays(20), 100, 0, 0, 0, 0, 0)));
+
+    @Test
+    void sumsWholeRange() {
+        assertEquals(new DailyActivitySeries.Totals(8, 3, 3, 4, 4, 1), series.sum(START, START.plusDays(9)));
+    }
+
+    @Test
+    void sumsSubRange() {
+        assertEquals(new DailyActivitySeries.Totals(5, 2, 2, 0, 4, 0), series.sum(START.plusDays(1), START.plusDays(8)));
+        assertEquals(new DailyActivitySeries.Totals(1, 0, 1, 1, 0, 0), series.sum(START.plusDays(9), START.plusDays(9)));
+    }
+
+    @Test
+    void clampsToSeriesRange() {
+        assertEquals(series.sum(START, START.plusDays(9)), series.sum(START.minusDays(30), START.plusDays(30)));
+        assertEquals(DailyActivitySeries.Totals.EMPTY, series.sum(START.plusDays(11), START.plusDays(12)));
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.demo.Service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseSchedulerTests {
+
+    @Test
+    void runsCallsOnDedicatedThreadsAndRecordsMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DatabaseScheduler scheduler = new DatabaseScheduler(2, 10, registry);
+
+        String threadName = scheduler.call(() -> Thread.currentThread().getName()).block();
+
+        assertTrue(threadName.startsWith("db-"));
+        assertEquals(1, registry.get("db.scheduler.execution").timer().count());
+        assertEquals(0, registry.get("db.scheduler.pending").gauge().value());
+        assertEquals(0, registry.get("db.scheduler.active").gauge().value());
+        scheduler.shutdown();
+    }
+
+    @Test
+    void nullResultCompletesEmpty() {
+        DatabaseScheduler scheduler = new DatabaseScheduler(1, 10, new SimpleMeterRegistry());
+
+        assertNull(scheduler.call(() -> null).block());
+        assertNull(scheduler.run(() -> { }).block());
+        scheduler.shutdown();
+    }
+}
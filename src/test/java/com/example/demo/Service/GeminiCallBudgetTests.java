@@ -0,0 +1,70 @@
+package com.example.demo.Service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiCallBudgetTests {
+
+    @Test
+    void grantsPermitsUntilExhausted() {
+        GeminiCallBudget budget = new GeminiCallBudget(2);
+        assertTrue(budget.tryAcquire());
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+        assertEquals(0, budget.remaining());
+    }
+
+    @Test
+    void isReadFromTheSubscriberContext() {
+        GeminiCallBudget budget = new GeminiCallBudget(1);
+        GeminiCallBudget found = Mono.deferContextual(context -> Mono.justOrEmpty(GeminiCallBudget.from(context)))
+                .contextWrite(budget.context())
+                .block();
+        assertSame(budget, found);
+        assertNull(Mono.deferContextual(context -> Mono.justOrEmpty(GeminiCallBudget.from(context))).block());
+    }
+
+    @Test
+    void exhaustedWarmerDoesNotPublishSharedCall() {
+        Map<String, Mono<String>> inFlight = new ConcurrentHashMap<>();
+        AtomicInteger started = new AtomicInteger();
+        Sinks.One<String> response = Sinks.one();
+        GeminiCallBudget exhausted = new GeminiCallBudget(0);
+
+        // ウォーマーが先に来ても、予算が無ければ共有の呼び出しを作らない
+        Mono<String> warmer = GeminiCallBudget.joinOrStart(inFlight, "k", () -> {
+            started.incrementAndGet();
+            return response.asMono().doFinally(signal -> inFlight.remove("k")).cache();
+        }).contextWrite(exhausted.context());
+        assertThrows(IllegalStateException.class, warmer::block);
+        assertTrue(inFlight.isEmpty());
+
+        // 同時に来たユーザーのリクエストは予算に関係なく自分で呼び出しを始める
+        Mono<String> user = GeminiCallBudget.joinOrStart(inFlight, "k", () -> {
+            started.incrementAndGet();
+            return response.asMono().doFinally(signal -> inFlight.remove("k")).cache();
+        });
+        AtomicInteger delivered = new AtomicInteger();
+        user.subscribe(text -> delivered.incrementAndGet());
+        assertEquals(1, inFlight.size());
+
+        // 実行中の呼び出しには、予算を使い切ったウォーマーも予算を使わずに合流できる
+        Mono<String> joined = GeminiCallBudget.joinOrStart(inFlight, "k", () -> {
+            started.incrementAndGet();
+            return Mono.just("unused");
+        }).contextWrite(exhausted.context());
+        joined.subscribe(text -> delivered.incrementAndGet());
+
+        response.tryEmitValue("ok");
+        assertEquals(1, started.get());
+        assertEquals(2, delivered.get());
+        assertTrue(inFlight.isEmpty());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.Service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiConcurrencyLimiterTests {
+
+    private static GeminiConcurrencyLimiter limiter(int initialLimit, int maxQueue, Duration maxWait) {
+        return new GeminiConcurrencyLimiter(initialLimit, 1, 10, Duration.ofSeconds(10), 0.5, maxQueue, maxWait,
+                error -> error instanceof IllegalStateException);
+    }
+
+    @Test
+    void rejectsWithRetryAfterWhenQueueIsFull() {
+        GeminiConcurrencyLimiter limiter = limiter(1, 0, Duration.ofSeconds(1));
+        Sinks.One<String> pending = Sinks.one();
+        limiter.limit(pending.asMono()).subscribe();
+
+        GeminiOverloadedException error = assertThrows(GeminiOverloadedException.class,
+                () -> limiter.limit(Mono.just("second")).block());
+        assertEquals(429, error.getStatusCode().value());
+        assertNotNull(error.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        pending.tryEmitValue("first");
+        assertEquals("third", limiter.limit(Mono.just("third")).block());
+    }
+
+    @Test
+    void queuedCallRunsWhenSlotFrees() {
+        GeminiConcurrencyLimiter limiter = limiter(1, 1, Duration.ofSeconds(5));
+        Sinks.One<String> pending = Sinks.one();
+        limiter.limit(pending.asMono()).subscribe();
+
+        Mono<String> queued = limiter.limit(Mono.just("queued")).cache();
+        queued.subscribe();
+        assertEquals(1, limiter.getQueued());
+
+        pending.tryEmitValue("first");
+        assertEquals("queued", queued.block(Duration.ofSeconds(1)));
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void rejectsWhenWaitExpires() {
+        GeminiConcurrencyLimiter limiter = limiter(1, 1, Duration.ofMillis(50));
+        limiter.limit(Sinks.<String>one().asMono()).subscribe();
+
+        assertThrows(GeminiOverloadedException.class, () -> limiter.limit(Mono.just("late")).block(Duration.ofSeconds(1)));
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    void decreasesOnOverloadAndIncreasesOnFastSuccess() {
+        GeminiConcurrencyLimiter limiter = limiter(4, 0, Duration.ofSeconds(1));
+
+        limiter.limit(Mono.error(new IllegalStateException())).onErrorResume(e -> Mono.empty()).block();
+        assertEquals(2.0, limiter.getLimit());
+
+        limiter.limit(Mono.just("ok")).block();
+        assertEquals(2.5, limiter.getLimit());
+
+        limiter.limit(Mono.error(new IllegalArgumentException())).onErrorResume(e -> Mono.empty()).block();
+        assertEquals(2.5, limiter.getLimit());
+    }
+}
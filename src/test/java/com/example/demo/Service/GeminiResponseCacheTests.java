@@ -0,0 +1,198 @@
+package com.example.demo.Service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GeminiResponseCacheTests {
+
+    /**
+     * gemini_response_caches の代わりにメモリ上の行を読み書きする。実行したSQLを記録する。
+     */
+    private static final class FakeJdbcTemplate extends JdbcTemplate {
+
+        private record Row(String model, String text, Instant expiresAt) {
+        }
+
+        private final Map<String, Row> rows = new ConcurrentHashMap<>();
+        private final List<String> statements = new CopyOnWriteArrayList<>();
+        private volatile boolean failing;
+
+        void insert(String key, String text, Instant expiresAt) {
+            rows.put(key, new Row("model", text, expiresAt));
+        }
+
+        long count(String prefix) {
+            return statements.stream().filter(sql -> sql.startsWith(prefix)).count();
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            statements.add(sql);
+            if (failing) {
+                throw new DataAccessResourceFailureException("connection refused");
+            }
+            Row row = rows.get((String) args[0]);
+            // expires_at > NOW() の条件
+            if (row == null || !row.expiresAt().isAfter(Instant.now())) {
+                return List.of();
+            }
+            try {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("response_text")).thenReturn(row.text());
+                when(rs.getTimestamp("expires_at")).thenReturn(Timestamp.from(row.expiresAt()));
+                return List.of(rowMapper.mapRow(rs, 0));
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int update(String sql) {
+            return update(sql, new Object[0]);
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            statements.add(sql);
+            if (sql.startsWith("INSERT")) {
+                rows.put((String) args[0], new Row((String) args[1], (String) args[2],
+                        Instant.now().plusSeconds(((Number) args[3]).longValue())));
+                return 1;
+            }
+            if (sql.startsWith("DELETE")) {
+                int before = rows.size();
+                rows.values().removeIf(row -> row.expiresAt().isBefore(Instant.now()));
+                return before - rows.size();
+            }
+            throw new UnsupportedOperationException(sql);
+        }
+    }
+
+    private final FakeJdbcTemplate jdbcTemplate = new FakeJdbcTemplate();
+    private final DatabaseScheduler scheduler = new DatabaseScheduler(1, 10, new SimpleMeterRegistry());
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdown();
+    }
+
+    private GeminiResponseCache cache(Duration ttl, Duration purgeInterval) {
+        return new GeminiResponseCache(jdbcTemplate, scheduler, 100, ttl, purgeInterval, registry);
+    }
+
+    // DB用スレッドは1本なので、後から積んだ処理が終われば先に積んだ書き込みも終わっている
+    private void awaitWrites() {
+        scheduler.run(() -> { }).block();
+    }
+
+    private double count(String name, String level) {
+        return level == null
+                ? registry.get(name).functionCounter().count()
+                : registry.get(name).tag("level", level).functionCounter().count();
+    }
+
+    @Test
+    void keyDependsOnModelAndPrompt() {
+        String key = GeminiResponseCache.key("model-a", "prompt");
+
+        assertEquals(64, key.length());
+        assertEquals(key, GeminiResponseCache.key("model-a", "prompt"));
+        assertNotEquals(key, GeminiResponseCache.key("model-b", "prompt"));
+        assertNotEquals(key, GeminiResponseCache.key("model-a", "prompt "));
+    }
+
+    @Test
+    void readsThroughToDatabaseAndKeepsRowInMemory() {
+        GeminiResponseCache cache = cache(Duration.ofHours(1), Duration.ofHours(1));
+        jdbcTemplate.insert("k", "stored", Instant.now().plus(1, ChronoUnit.HOURS));
+
+        assertEquals("stored", cache.get("k").block());
+        assertEquals("stored", cache.get("k").block());
+
+        // 2回目はメモリから返し、DBは読まない
+        assertEquals(1, jdbcTemplate.count("SELECT"));
+        assertEquals(1, count("gemini.cache.hits", "database"));
+        assertEquals(1, count("gemini.cache.hits", "memory"));
+    }
+
+    @Test
+    void expiredOrMissingRowIsAMiss() {
+        GeminiResponseCache cache = cache(Duration.ofHours(1), Duration.ofHours(1));
+        jdbcTemplate.insert("expired", "old", Instant.now().minusSeconds(1));
+
+        assertNull(cache.get("expired").block());
+        assertNull(cache.get("missing").block());
+        assertEquals(2, count("gemini.cache.misses", null));
+    }
+
+    @Test
+    void databaseErrorFallsBackToMiss() {
+        GeminiResponseCache cache = cache(Duration.ofHours(1), Duration.ofHours(1));
+        jdbcTemplate.failing = true;
+
+        assertNull(cache.get("k").block());
+        assertEquals(1, count("gemini.cache.misses", null));
+    }
+
+    @Test
+    void putUpsertsRowWithTtl() {
+        GeminiResponseCache cache = cache(Duration.ofMinutes(30), Duration.ofHours(1));
+
+        cache.put("k", "model-a", "first");
+        cache.put("k", "model-b", "second");
+        awaitWrites();
+
+        assertEquals(2, jdbcTemplate.count("INSERT"));
+        FakeJdbcTemplate.Row row = jdbcTemplate.rows.get("k");
+        assertEquals("model-b", row.model());
+        assertEquals("second", row.text());
+        Duration remaining = Duration.between(Instant.now(), row.expiresAt());
+        assertTrue(remaining.compareTo(Duration.ofMinutes(29)) > 0 && remaining.compareTo(Duration.ofMinutes(30)) <= 0);
+
+        // メモリが空の別インスタンス（再起動後や他のノード）からもDB経由で読める
+        assertEquals("second", cache(Duration.ofMinutes(30), Duration.ofHours(1)).get("k").block());
+    }
+
+    @Test
+    void purgesExpiredRowsOnlyOncePerInterval() throws InterruptedException {
+        jdbcTemplate.insert("expired", "old", Instant.now().minusSeconds(1));
+
+        GeminiResponseCache rarely = cache(Duration.ofHours(1), Duration.ofHours(1));
+        rarely.put("a", "model", "text");
+        awaitWrites();
+        assertEquals(0, jdbcTemplate.count("DELETE"));
+        assertTrue(jdbcTemplate.rows.containsKey("expired"));
+
+        GeminiResponseCache often = cache(Duration.ofHours(1), Duration.ofMillis(50));
+        Thread.sleep(100);
+        often.put("b", "model", "text");
+        often.put("c", "model", "text");
+        awaitWrites();
+
+        // 間隔が過ぎた後の最初の書き込みでだけ消す
+        assertEquals(1, jdbcTemplate.count("DELETE"));
+        assertFalse(jdbcTemplate.rows.containsKey("expired"));
+        assertTrue(jdbcTemplate.rows.containsKey("b"));
+        assertTrue(jdbcTemplate.rows.containsKey("c"));
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.demo.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GitHubApiClientTests {
+
+    @Test
+    void endpointReplacesNamesAndIds() {
+        assertEquals("/repos/{owner}/{repo}/commits",
+                GitHubApiClient.endpoint(URI.create("https://api.github.com/repos/octo/app/commits?page=2")));
+        assertEquals("/repos/{owner}/{repo}/commits/{id}",
+                GitHubApiClient.endpoint(URI.create("https://api.github.com/repos/octo/app/commits/9fceb02d0ae598e95dc970b74767f19372d61af8")));
+        assertEquals("/users/{username}/events",
+                GitHubApiClient.endpoint(URI.create("https://api.github.com/users/octocat/events")));
+        assertEquals("/rate_limit", GitHubApiClient.endpoint(URI.create("https://api.github.com/rate_limit")));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.demo.Service;
+
+import com.example.demo.dto.GitHubEvent;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GitHubEventDecoderTests {
+
+    private static final String EVENTS = """
+            [
+              {"id": "2", "type": "PushEvent",
+               "actor": {"id": 1, "login": "taro", "url": "https://api.github.com/users/taro"},
+               "repo": {"id": 10, "name": "taro/app"},
+               "payload": {"push_id": 99, "size": 2, "ref": "refs/heads/main",
+                 "commits": [
+                   {"sha": "aaa", "author": {"name": "taro", "email": "t@example.com"}, "message": "feat: add login", "distinct": true, "url": "https://api.github.com/repos/taro/app/commits/aaa"},
+                   {"sha": "bbb", "author": {"name": "taro"}, "message": "fix bug", "url": "https://api.github.com/repos/taro/app/commits/bbb"}
+                 ]},
+               "public": true, "created_at": "2025-08-05T10:00:00Z"},
+              {"id": "1", "type": "WatchEvent", "repo": {"name": "other/lib"},
+               "payload": {"action": "started"}, "public": true, "created_at": "2025-08-04T09:00:00Z"}
+            ]
+            """;
+
+    private final GitHubEventDecoder decoder = new GitHubEventDecoder();
+
+    @Test
+    void extractsEventsAcrossArbitraryChunkBoundaries() {
+        List<GitHubEvent> events = decoder.decode(chunks(EVENTS, 7)).collectList().block();
+
+        assertNotNull(events);
+        assertEquals(2, events.size());
+        GitHubEvent push = events.get(0);
+        assertEquals("2", push.id());
+        assertEquals("PushEvent", push.type());
+        assertEquals("taro/app", push.repoName());
+        assertEquals(2, push.commits().size());
+        assertEquals("aaa", push.commits().get(0).sha());
+        assertEquals("feat: add login", push.commits().get(0).message());
+        assertEquals("https://api.github.com/repos/taro/app/commits/bbb", push.commits().get(1).url());
+        assertEquals("other/lib", events.get(1).repoName());
+        assertTrue(events.get(1).commits().isEmpty());
+    }
+
+    @Test
+    void stopsReadingWhenDownstreamCancels() {
+        List<byte[]> emitted = new ArrayList<>();
+        Flux<byte[]> body = chunks(EVENTS, 16).doOnNext(emitted::add);
+
+        GitHubEvent first = decoder.decode(body).next().block();
+
+        assertNotNull(first);
+        assertEquals("2", first.id());
+        assertTrue(emitted.size() < chunks(EVENTS, 16).count().block());
+    }
+
+    private static Flux<byte[]> chunks(String json, int size) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> chunks = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += size) {
+            chunks.add(Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + size)));
+        }
+        return Flux.fromIterable(chunks);
+    }
+}
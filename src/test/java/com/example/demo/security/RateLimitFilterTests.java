@@ -0,0 +1,78 @@
+package com.example.demo.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTests {
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void classifiesOnlyRateLimitedEndpoints() {
+        assertEquals(RateLimitFilter.EndpointClass.ANALYSIS,
+                RateLimitFilter.classify(new MockHttpServletRequest("POST", "/api/repositories/octo/repo/analysis")));
+        assertEquals(RateLimitFilter.EndpointClass.ANALYSIS,
+                RateLimitFilter.classify(new MockHttpServletRequest("POST", "/api/analysis/batch")));
+        assertEquals(RateLimitFilter.EndpointClass.ACTIVITY,
+                RateLimitFilter.classify(new MockHttpServletRequest("GET", "/api/analysis")));
+        assertEquals(RateLimitFilter.EndpointClass.ACTIVITY,
+                RateLimitFilter.classify(new MockHttpServletRequest("GET", "/api/teams/1/analysis")));
+        assertNull(RateLimitFilter.classify(new MockHttpServletRequest("GET", "/api/analysis/jobs/1")));
+        assertNull(RateLimitFilter.classify(new MockHttpServletRequest("GET", "/api/me")));
+    }
+
+    @Test
+    void bucketAllowsCapacityThenRefills() {
+        RateLimitFilter.Limit limit = new RateLimitFilter.Limit(3, Duration.ofSeconds(3));
+        RateLimitFilter.Bucket bucket = new RateLimitFilter.Bucket();
+        long now = 0;
+
+        assertEquals(0, bucket.tryConsume(limit, now));
+        assertEquals(0, bucket.tryConsume(limit, now));
+        assertEquals(0, bucket.tryConsume(limit, now));
+        assertEquals(0, bucket.remaining(limit, now));
+        assertEquals(Duration.ofSeconds(1).toNanos(), bucket.tryConsume(limit, now));
+
+        now += Duration.ofSeconds(1).toNanos();
+        assertEquals(1, bucket.remaining(limit, now));
+        assertEquals(0, bucket.tryConsume(limit, now));
+
+        now += Duration.ofSeconds(3).toNanos();
+        assertTrue(bucket.isFull(now));
+    }
+
+    @Test
+    void rejectsWithHeadersOnceLimitIsReached() throws Exception {
+        RateLimitFilter filter = new RateLimitFilter(1, Duration.ofMinutes(1), 10, Duration.ofMinutes(1));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("42", null, List.of()));
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/analysis/batch"), first, new MockFilterChain());
+        assertEquals(200, first.getStatus());
+        assertEquals("1", first.getHeader("RateLimit-Limit"));
+        assertEquals("0", first.getHeader("RateLimit-Remaining"));
+
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/analysis/batch"), second, new MockFilterChain());
+        assertEquals(429, second.getStatus());
+        assertEquals("60", second.getHeader("Retry-After"));
+
+        // 別の種類のエンドポイントは別のバケットで数える
+        MockHttpServletResponse activity = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/analysis"), activity, new MockFilterChain());
+        assertEquals(200, activity.getStatus());
+    }
+}